@@ -0,0 +1,20 @@
+package com.todolist.task.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.todolist.task.TaskApplication;
+
+// Starts the whole application on a random port against its embedded H2 database
+final class BenchmarkApplication {
+	
+	private BenchmarkApplication() {
+		
+	}
+	
+	static ConfigurableApplicationContext start() {
+		return new SpringApplicationBuilder(TaskApplication.class)
+				.run("--server.port=0", "--logging.file=target/benchmark.log", "--logging.level.root=WARN");
+	}
+	
+}
@@ -0,0 +1,97 @@
+package com.todolist.task.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+	
+	private static final TypeReference<List<Task>> TASK_LIST = new TypeReference<List<Task>>() { };
+	
+	@Param({ "1", "100", "10000" })
+	private int size;
+	
+	// the encodings negotiated by TaskController, each mapper built like the one of its message converter:
+	// Spring MVC builds the Smile and CBOR ones, Spring Boot the JSON one with dates written as text
+	@Param({ "json", "smile", "cbor" })
+	private String format;
+	
+	private ObjectMapper objectMapper;
+	private List<Task> tasks;
+	private byte[] encoded;
+	
+	@Setup
+	public void setup() throws JsonProcessingException {
+		if ("smile".equals(format))
+			objectMapper = Jackson2ObjectMapperBuilder.smile().build();
+		else if ("cbor".equals(format))
+			objectMapper = Jackson2ObjectMapperBuilder.cbor().build();
+		else
+			objectMapper = Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+				.build();
+		tasks = new ArrayList<Task>(size);
+		for (int i = 1; i <= size; i++) {
+			String status = i % 2 == 0 ? TaskConstant.Status.done : TaskConstant.Status.pending;
+			tasks.add(new Task(i, "Task subject number " + i, "A free text description of the task number " + i, status));
+		}
+		encoded = objectMapper.writeValueAsBytes(tasks);
+	}
+	
+	// reported as encodedSize:bytes, JMH sums the counter over the iterations so it is measured
+	// over a single iteration
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class EncodedSize {
+		
+		public long bytes;
+		
+	}
+	
+	@Benchmark
+	@Warmup(iterations = 1, time = 1)
+	@Measurement(iterations = 1, time = 1)
+	public byte[] encodedSize(EncodedSize encodedSize) throws JsonProcessingException {
+		byte[] bytes = objectMapper.writeValueAsBytes(tasks);
+		encodedSize.bytes = bytes.length;
+		return bytes;
+	}
+	
+	@Benchmark
+	public byte[] serializeList() throws JsonProcessingException {
+		return objectMapper.writeValueAsBytes(tasks);
+	}
+	
+	@Benchmark
+	public List<Task> deserializeList() throws IOException {
+		return objectMapper.readValue(encoded, TASK_LIST);
+	}
+	
+}
@@ -0,0 +1,94 @@
+package com.todolist.task.benchmark;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.services.TaskService;
+
+// Measures request dispatch through the whole MVC stack without the network
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskControllerBenchmark {
+	
+	private static final int TASKS = 100;
+	
+	private ConfigurableApplicationContext context;
+	private MockMvc mvc;
+	private int taskId;
+	private long sequence;
+	
+	@Setup
+	public void setup() throws Exception {
+		context = BenchmarkApplication.start();
+		mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+		TaskService taskService = context.getBean(TaskService.class);
+		for (int i = 0; i < TASKS; i++)
+			taskId = taskService.save(new Task("seeded task " + i, "seeded by the benchmark", TaskConstant.Status.pending)).getId();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+	
+	// Handlers answer asynchronously, the dispatch writing the result is part of the measured request
+	private MvcResult perform(RequestBuilder requestBuilder) throws Exception {
+		MvcResult mvcResult = mvc.perform(requestBuilder).andReturn();
+		if (mvcResult.getRequest().isAsyncStarted())
+			mvcResult = mvc.perform(asyncDispatch(mvcResult)).andReturn();
+		return mvcResult;
+	}
+	
+	@Benchmark
+	public MvcResult getTask() throws Exception {
+		return perform(get("/tasks/" + taskId).accept(MediaType.APPLICATION_JSON));
+	}
+	
+	@Benchmark
+	public MvcResult getTaskPage() throws Exception {
+		return perform(get("/tasks?limit=20").accept(MediaType.APPLICATION_JSON));
+	}
+	
+	@Benchmark
+	public MvcResult getAllTasks() throws Exception {
+		return perform(get("/tasks").accept(MediaType.APPLICATION_JSON));
+	}
+	
+	@Benchmark
+	public MvcResult createTask() throws Exception {
+		String content = "{\"subject\":\"benchmark task " + (++sequence) + "\",\"status\":\"pending\"}";
+		return perform(post("/tasks")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(content));
+	}
+	
+}
@@ -0,0 +1,88 @@
+package com.todolist.task.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.todolist.task.cache.TaskCache;
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.exception.TaskException;
+import com.todolist.task.services.TaskService;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+	
+	private static final int TASKS = 1000;
+	
+	private ConfigurableApplicationContext context;
+	private TaskService taskService;
+	private TaskCache taskCache;
+	private int[] ids;
+	private String[] subjects;
+	private int next;
+	private long sequence;
+	
+	@Setup
+	public void setup() throws TaskException {
+		context = BenchmarkApplication.start();
+		taskService = context.getBean(TaskService.class);
+		taskCache = context.getBean(TaskCache.class);
+		ids = new int[TASKS];
+		subjects = new String[TASKS];
+		for (int i = 0; i < TASKS; i++) {
+			subjects[i] = "seeded task " + i;
+			ids[i] = taskService.save(new Task(subjects[i], "seeded by the benchmark", TaskConstant.Status.pending)).getId();
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		context.close();
+	}
+	
+	private int nextIndex() {
+		next = (next + 1) % TASKS;
+		return next;
+	}
+	
+	@Benchmark
+	public Task save() throws TaskException {
+		return taskService.save(new Task("benchmark task " + (++sequence), "created by the benchmark", TaskConstant.Status.pending));
+	}
+	
+	@Benchmark
+	public Task getTaskById_cached() throws TaskException {
+		return taskService.getTaskById(ids[nextIndex()]);
+	}
+	
+	@Benchmark
+	public Task getTaskById_uncached() throws TaskException {
+		int id = ids[nextIndex()];
+		taskCache.evict(id);
+		return taskService.getTaskById(id);
+	}
+	
+	@Benchmark
+	public int update() throws TaskException {
+		int index = nextIndex();
+		return taskService.update(ids[index], new Task(subjects[index], "updated by the benchmark", TaskConstant.Status.done), null);
+	}
+	
+}
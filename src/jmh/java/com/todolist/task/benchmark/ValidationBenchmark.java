@@ -0,0 +1,66 @@
+package com.todolist.task.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.validator.TaskValidator;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+	
+	private TaskValidator taskValidator;
+	private Validator validator;
+	private Task validTask;
+	private Task invalidTask;
+	
+	@Setup
+	public void setup() {
+		taskValidator = new TaskValidator();
+		validator = Validation.buildDefaultValidatorFactory().getValidator();
+		validTask = new Task("Sweep the floor", "both of 1st and 2nd floor", TaskConstant.Status.pending);
+		invalidTask = new Task("", "both of 1st and 2nd floor", TaskConstant.Status.pending + "g");
+	}
+	
+	@Benchmark
+	public boolean isValid_pending() {
+		return taskValidator.isValid("Pending", null);
+	}
+	
+	@Benchmark
+	public boolean isValid_invalid() {
+		return taskValidator.isValid("archived", null);
+	}
+	
+	@Benchmark
+	public Set<ConstraintViolation<Task>> validate_validTask() {
+		return validator.validate(validTask);
+	}
+	
+	@Benchmark
+	public Set<ConstraintViolation<Task>> validate_invalidTask() {
+		return validator.validate(invalidTask);
+	}
+	
+}
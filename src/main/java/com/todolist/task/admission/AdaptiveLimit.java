@@ -0,0 +1,76 @@
+package com.todolist.task.admission;
+
+import java.util.concurrent.TimeUnit;
+
+// Concurrency limit following the latency of the calls it admits: it grows by about one per round trip
+// while the calls complete within the target and the limit is in use, and is cut by the backoff ratio when
+// one does not. The calls admitted before a cut complete under the old limit, so they cannot cut it again
+public class AdaptiveLimit {
+	
+	public class Permit {
+	
+		private final long start = System.nanoTime();
+	
+		private Permit() {
+	
+		}
+	
+		// dropped tells the call never ran or failed for the server, it cuts the limit whatever its latency
+		public void release(boolean dropped) {
+			AdaptiveLimit.this.release(start, System.nanoTime(), dropped);
+		}
+	
+	}
+	
+	private final int minLimit;
+	private final int maxLimit;
+	private final long latencyTargetNanos;
+	private final double backoffRatio;
+	private double limit;
+	private int inFlight;
+	private long lastBackoff;
+	
+	public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, long latencyTarget, TimeUnit unit, double backoffRatio) {
+		if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit)
+			throw new IllegalArgumentException("Invalid concurrency limits: initial " + initialLimit + ", min " + minLimit 
+					+ ", max " + maxLimit);
+		if (backoffRatio <= 0 || backoffRatio >= 1)
+			throw new IllegalArgumentException("Backoff ratio must be between 0 and 1: " + backoffRatio);
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTargetNanos = unit.toNanos(latencyTarget);
+		this.backoffRatio = backoffRatio;
+		this.limit = initialLimit;
+		this.lastBackoff = System.nanoTime();
+	}
+	
+	// null once the limit is reached
+	public synchronized Permit tryAcquire() {
+		if (inFlight >= (int) limit)
+			return null;
+		inFlight++;
+		return new Permit();
+	}
+	
+	synchronized void release(long start, long end, boolean dropped) {
+		int wasInFlight = inFlight--;
+		if (dropped || end - start > latencyTargetNanos) {
+			if (start - lastBackoff >= 0) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+				lastBackoff = end;
+			}
+		} else if (wasInFlight * 2 >= limit) {
+			// an idle limit is not proven and does not grow
+			limit = Math.min(maxLimit, limit + 1 / limit);
+		}
+	}
+	
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+	
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+	
+}
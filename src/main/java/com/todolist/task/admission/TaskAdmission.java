@@ -0,0 +1,93 @@
+package com.todolist.task.admission;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Admission of the task API calls under separate adaptive limits for reads, writes and bulk calls, a call over
+// its limit is rejected at once instead of waiting behind the ones already slowing down. A bulk call takes far
+// longer than a single task write by design, so it has its own limit and latency target and never cuts theirs
+@Component
+public class TaskAdmission {
+	
+	private static final String READ = "read";
+	private static final String WRITE = "write";
+	private static final String BULK = "bulk";
+	
+	private final AdaptiveLimit readLimit;
+	private final AdaptiveLimit writeLimit;
+	private final AdaptiveLimit bulkLimit;
+	private final Counter readRejections;
+	private final Counter writeRejections;
+	private final Counter bulkRejections;
+	
+	@Autowired
+	public TaskAdmission(@Value("${task.admission.read.initial-limit:20}") int readInitialLimit,
+			@Value("${task.admission.read.max-limit:200}") int readMaxLimit,
+			@Value("${task.admission.read.latency-target:200ms}") Duration readLatencyTarget,
+			@Value("${task.admission.write.initial-limit:10}") int writeInitialLimit,
+			@Value("${task.admission.write.max-limit:100}") int writeMaxLimit,
+			@Value("${task.admission.write.latency-target:500ms}") Duration writeLatencyTarget,
+			@Value("${task.admission.bulk.initial-limit:2}") int bulkInitialLimit,
+			@Value("${task.admission.bulk.max-limit:8}") int bulkMaxLimit,
+			@Value("${task.admission.bulk.latency-target:30s}") Duration bulkLatencyTarget,
+			@Value("${task.admission.min-limit:2}") int minLimit,
+			@Value("${task.admission.backoff-ratio:0.9}") double backoffRatio,
+			MeterRegistry meterRegistry) {
+		this.readLimit = new AdaptiveLimit(readInitialLimit, minLimit, readMaxLimit, readLatencyTarget.toNanos(), 
+				TimeUnit.NANOSECONDS, backoffRatio);
+		this.writeLimit = new AdaptiveLimit(writeInitialLimit, minLimit, writeMaxLimit, writeLatencyTarget.toNanos(), 
+				TimeUnit.NANOSECONDS, backoffRatio);
+		// a bulk call holds a connection for long, one is always admitted even below the min of the others
+		this.bulkLimit = new AdaptiveLimit(bulkInitialLimit, 1, bulkMaxLimit, bulkLatencyTarget.toNanos(), 
+				TimeUnit.NANOSECONDS, backoffRatio);
+		this.readRejections = monitor(meterRegistry, readLimit, READ);
+		this.writeRejections = monitor(meterRegistry, writeLimit, WRITE);
+		this.bulkRejections = monitor(meterRegistry, bulkLimit, BULK);
+	}
+	
+	private Counter monitor(MeterRegistry meterRegistry, AdaptiveLimit limit, String type) {
+		Gauge.builder("tasks.admission.limit", limit, AdaptiveLimit::getLimit)
+				.description("Calls admitted at once")
+				.tag("type", type)
+				.register(meterRegistry);
+		Gauge.builder("tasks.admission.inflight", limit, AdaptiveLimit::getInFlight)
+				.description("Calls admitted and not completed yet")
+				.tag("type", type)
+				.register(meterRegistry);
+		return Counter.builder("tasks.admission.rejected")
+				.description("Calls rejected over the limit")
+				.tag("type", type)
+				.register(meterRegistry);
+	}
+	
+	// Reads are the safe methods, a null method is a call made outside of a request
+	public AdaptiveLimit.Permit admit(String method) {
+		boolean write = method != null && !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method) 
+				&& !HttpMethod.OPTIONS.matches(method);
+		return write ? admit(writeLimit, writeRejections, WRITE) : admit(readLimit, readRejections, READ);
+	}
+	
+	// Batch creation, bulk status updates and bulk deletes
+	public AdaptiveLimit.Permit admitBulk() {
+		return admit(bulkLimit, bulkRejections, BULK);
+	}
+	
+	private AdaptiveLimit.Permit admit(AdaptiveLimit limit, Counter rejections, String type) {
+		AdaptiveLimit.Permit permit = limit.tryAcquire();
+		if (permit != null)
+			return permit;
+		rejections.increment();
+		throw new TaskRejectedException("The " + type + " concurrency limit of " + limit.getLimit() + " is reached");
+	}
+	
+}
@@ -0,0 +1,73 @@
+package com.todolist.task.cache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Bounded read-through cache of tasks by id, cached tasks are shared and must not be modified
+@Component
+public class TaskCache {
+	
+	private final Cache<Integer, Task> cache;
+	// bumped by every eviction, a load that started before an eviction must not be cached
+	private final AtomicLong invalidations = new AtomicLong();
+	
+	@Autowired
+	public TaskCache(@Value("${task.cache.maximum-size:10000}") long maximumSize, 
+			@Value("${task.cache.expire-after-write:10m}") Duration expireAfterWrite, MeterRegistry meterRegistry) {
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(maximumSize)
+				.expireAfterWrite(expireAfterWrite)
+				.recordStats()
+				.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "tasks");
+	}
+	
+	public Task get(int id) {
+		return cache.getIfPresent(id);
+	}
+	
+	public long stamp() {
+		return invalidations.get();
+	}
+	
+	// Caches a task loaded from the database unless a write was evicted since the load started
+	public void put(Task task, long stamp) {
+		cache.put(task.getId(), task);
+		if (invalidations.get() != stamp)
+			cache.invalidate(task.getId());
+	}
+	
+	public void evict(int id) {
+		invalidations.incrementAndGet();
+		cache.invalidate(id);
+	}
+	
+	// Evict as soon as the write is issued so the writing transaction never reads the old entry
+	@EventListener
+	public void evictOnWrite(TaskEvent event) {
+		if (event.getType() != TaskEvent.Type.CREATED)
+			evict(event.getId());
+	}
+	
+	// and again after commit, a concurrent reader may have loaded the old row before the commit
+	@TransactionalEventListener(fallbackExecution = true)
+	public void evictOnCommit(TaskEvent event) {
+		if (event.getType() != TaskEvent.Type.CREATED)
+			evict(event.getId());
+	}
+	
+}
@@ -0,0 +1,119 @@
+package com.todolist.task.cache;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// JSON of tasks encoded once and written as is by the responses. A task encoding is kept with the version
+// it was encoded from, every write changes the version so a stale one is never served. The whole list is
+// assembled from the task encodings and kept with the list version, a write only re-encodes the tasks it changed
+@Component
+public class TaskJsonCache {
+	
+	private static final byte[] EMPTY_LIST = { '[', ']' };
+	
+	private static class Encoded {
+	
+		private final long version;
+		private final byte[] json;
+	
+		private Encoded(long version, byte[] json) {
+			this.version = version;
+			this.json = json;
+		}
+	
+	}
+	
+	private final Cache<Integer, Encoded> tasks;
+	private final ObjectWriter writer;
+	private volatile Encoded list;
+	
+	@Autowired
+	public TaskJsonCache(@Value("${task.cache.json-maximum-size:32MB}") DataSize maximumSize, ObjectMapper objectMapper, 
+			MeterRegistry meterRegistry) {
+		this.tasks = Caffeine.newBuilder()
+				.maximumWeight(maximumSize.toBytes())
+				.<Integer, Encoded>weigher((id, encoded) -> encoded.json.length)
+				.recordStats()
+				.build();
+		this.writer = objectMapper.writerFor(Task.class);
+		CaffeineCacheMetrics.monitor(meterRegistry, tasks, "tasks.json");
+	}
+	
+	// The encoding of the task at its version, the cached bytes are shared and must not be modified
+	public byte[] get(Task task) {
+		Encoded encoded = tasks.getIfPresent(task.getId());
+		if (encoded != null && encoded.version == task.getVersion())
+			return encoded.json;
+		byte[] json = encode(task);
+		tasks.put(task.getId(), new Encoded(task.getVersion(), json));
+		return json;
+	}
+	
+	// The encoding of the list at the version, loaded and assembled only when the list changed since the last one.
+	// The version must be taken before loading so a write committed meanwhile leaves an older version on it
+	public byte[] list(long version, Supplier<List<Task>> loader) {
+		Encoded encoded = list;
+		if (encoded != null && encoded.version == version)
+			return encoded.json;
+		byte[] json = assemble(loader.get());
+		encoded = list;
+		if (encoded == null || encoded.version < version)
+			list = new Encoded(version, json);
+		return json;
+	}
+	
+	private byte[] assemble(List<Task> loaded) {
+		if (loaded.isEmpty())
+			return EMPTY_LIST;
+		byte[][] parts = new byte[loaded.size()][];
+		int size = 1 + loaded.size();
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = get(loaded.get(i));
+			size += parts[i].length;
+		}
+		byte[] json = new byte[size];
+		int position = 0;
+		json[position++] = '[';
+		for (byte[] part : parts) {
+			System.arraycopy(part, 0, json, position, part.length);
+			position += part.length;
+			json[position++] = ',';
+		}
+		json[position - 1] = ']';
+		return json;
+	}
+	
+	private byte[] encode(Task task) {
+		try {
+			return writer.writeValueAsBytes(task);
+		} catch (JsonProcessingException e) {
+			throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+		}
+	}
+	
+	// A written task is encoded again anyway, dropping it only frees the memory of the old version early
+	@TransactionalEventListener(fallbackExecution = true)
+	public void evictOnCommit(TaskEvent event) {
+		if (event.getType() != TaskEvent.Type.CREATED)
+			tasks.invalidate(event.getId());
+	}
+	
+}
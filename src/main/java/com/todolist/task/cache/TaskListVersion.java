@@ -0,0 +1,41 @@
+package com.todolist.task.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.todolist.task.events.TaskEvent;
+
+// Version of the whole task list, bumped after every committed write so list responses can be
+// validated with an entity tag without reading any row
+@Component
+public class TaskListVersion {
+	
+	// distinguishes versions of this process from the ones handed out before a restart
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+	private final AtomicLong version = new AtomicLong();
+	
+	public long get() {
+		return version.get();
+	}
+	
+	public String eTag() {
+		return eTag(version.get());
+	}
+	
+	public String eTag(long version) {
+		return eTag(version, null);
+	}
+	
+	// the binary encodings of the list get their own tag, null is the JSON one
+	public String eTag(long version, String binaryFormat) {
+		return "\"" + epoch + "-" + version + (binaryFormat == null ? "" : "-" + binaryFormat) + "\"";
+	}
+	
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskEvent(TaskEvent event) {
+		version.incrementAndGet();
+	}
+	
+}
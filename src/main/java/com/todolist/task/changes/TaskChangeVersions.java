@@ -0,0 +1,97 @@
+package com.todolist.task.changes;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.todolist.task.repositories.TaskRepository;
+
+// Hands out the change versions stamped on task writes and tombstones. Versions are handed out in order but
+// committed in any order, so a reader only goes up to the visible version: every write below it has completed,
+// a later write can never commit a version the reader already went past. The tombstones of the deletes are kept
+// for the last tombstone-retention versions, a reader further behind may have missed deletes and reloads the tasks.
+// The version they were pruned up to is stored first, the horizon never goes below it even when a restart
+// hands out again the versions of the writes that rolled back last
+@Component
+public class TaskChangeVersions {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskChangeVersions.class);
+	
+	private long last;
+	// first version of every block handed to a transaction that has not completed yet
+	private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<Long>();
+	private volatile long prunedUpTo;
+	
+	@Autowired
+	TaskRepository taskRepository;
+	
+	@Value("${task.changes.tombstone-retention:1000000}")
+	long tombstoneRetention = 1000000;
+	
+	@PostConstruct
+	public synchronized void init() {
+		if (tombstoneRetention < 1)
+			throw new IllegalArgumentException("task.changes.tombstone-retention must be at least 1: " + tombstoneRetention);
+		last = Math.max(taskRepository.findLastChangeVersion(), taskRepository.findLastTombstoneChangeVersion());
+		prunedUpTo = taskRepository.findTombstoneHorizon();
+	}
+	
+	public long next() {
+		return next(1);
+	}
+	
+	// Reserves count consecutive versions and returns the first, they stay pending until the transaction completes
+	public long next(int count) {
+		long first;
+		synchronized (this) {
+			first = last + 1;
+			last += count;
+			if (TransactionSynchronizationManager.isSynchronizationActive())
+				pending.add(first);
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					pending.remove(first);
+				}
+			});
+		}
+		return first;
+	}
+	
+	// A rolled back write leaves a gap, readers only ever skip it
+	public synchronized long visible() {
+		return pending.isEmpty() ? last : pending.first() - 1;
+	}
+	
+	// The tombstones up to it may be pruned, it only moves forward with the visible version
+	public long horizon() {
+		return Math.max(prunedUpTo, visible() - tombstoneRetention);
+	}
+	
+	@Transactional
+	@Scheduled(fixedDelayString = "${task.changes.prune-interval:PT10M}", 
+			initialDelayString = "${task.changes.prune-interval:PT10M}")
+	public void pruneTombstones() {
+		long horizon = horizon();
+		if (horizon <= prunedUpTo)
+			return;
+		taskRepository.saveTombstoneHorizon(horizon);
+		prunedUpTo = horizon;
+		int pruned = taskRepository.deleteTombstonesUpTo(horizon);
+		if (pruned > 0)
+			logger.info("{} task tombstones pruned up to change version {}", pruned, horizon);
+	}
+	
+}
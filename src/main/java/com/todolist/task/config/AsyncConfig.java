@@ -0,0 +1,131 @@
+package com.todolist.task.config;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.todolist.task.metrics.SqlStatementMetrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+	
+	private static final String THREAD_NAME_PREFIX = "task-request-";
+	private static final String EVENT_THREAD_NAME_PREFIX = "task-event-";
+	
+	@Value("${task.async.max-threads:200}")
+	int maxThreads;
+	
+	@Value("${task.async.queue-capacity:1000}")
+	int queueCapacity;
+	
+	@Value("${task.async.timeout:30s}")
+	Duration timeout;
+	
+	@Value("${task.async.virtual-threads:true}")
+	boolean virtualThreads;
+	
+	@Value("${task.events.writer-threads:32}")
+	int eventWriterThreads;
+	
+	@Autowired
+	SqlStatementMetrics sqlStatementMetrics;
+	
+	// Runs the controller calls and the streamed responses, at most maxThreads at a time with
+	// queueCapacity more waiting, anything beyond is rejected. A call counts its SQL statements for its request.
+	// With virtual threads every call gets a new one under the same bounds, pooling them would only keep the
+	// ceiling of platform threads
+	@Bean
+	public AsyncTaskExecutor taskRequestExecutor() {
+		ThreadFactory threadFactory = virtualThreads ? virtualThreadFactory(THREAD_NAME_PREFIX) : null;
+		if (threadFactory != null) {
+			BoundedThreadPerTaskExecutor executor = new BoundedThreadPerTaskExecutor(threadFactory, maxThreads, queueCapacity);
+			executor.setTaskDecorator(sqlStatementMetrics::decorate);
+			return executor;
+		}
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(maxThreads);
+		executor.setMaxPoolSize(maxThreads);
+		executor.setQueueCapacity(queueCapacity);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+		executor.setTaskDecorator(sqlStatementMetrics::decorate);
+		return executor;
+	}
+	
+	// Writes the task events to their subscribers. A write blocks while the client does not read, so the
+	// writers are kept apart from the request threads, each subscriber waits for at most one of them
+	@Bean
+	public AsyncTaskExecutor taskEventExecutor() {
+		ThreadFactory threadFactory = virtualThreads ? virtualThreadFactory(EVENT_THREAD_NAME_PREFIX) : null;
+		if (threadFactory != null)
+			return new BoundedThreadPerTaskExecutor(threadFactory, eventWriterThreads, Integer.MAX_VALUE - eventWriterThreads);
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(eventWriterThreads);
+		executor.setMaxPoolSize(eventWriterThreads);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setThreadNamePrefix(EVENT_THREAD_NAME_PREFIX);
+		return executor;
+	}
+	
+	@Bean
+	public MeterBinder taskRequestExecutorMetrics(AsyncTaskExecutor taskRequestExecutor) {
+		return registry -> bindTo(registry, taskRequestExecutor, "tasks.requests");
+	}
+	
+	@Bean
+	public MeterBinder taskEventExecutorMetrics(AsyncTaskExecutor taskEventExecutor) {
+		return registry -> bindTo(registry, taskEventExecutor, "tasks.events.writers");
+	}
+	
+	// The running and waiting calls of a thread-per-task executor under the names of the pool metrics
+	private static void bindTo(MeterRegistry registry, AsyncTaskExecutor executor, String name) {
+		if (executor instanceof ThreadPoolTaskExecutor) {
+			new ExecutorServiceMetrics(((ThreadPoolTaskExecutor) executor).getThreadPoolExecutor(), name, Tags.empty())
+					.bindTo(registry);
+			return;
+		}
+		BoundedThreadPerTaskExecutor bounded = (BoundedThreadPerTaskExecutor) executor;
+		Gauge.builder("executor.active", bounded, BoundedThreadPerTaskExecutor::getActiveCount)
+				.description("The approximate number of threads that are actively executing tasks")
+				.tag("name", name)
+				.register(registry);
+		Gauge.builder("executor.queued", bounded, BoundedThreadPerTaskExecutor::getQueueSize)
+				.description("The approximate number of tasks that are queued for execution")
+				.tag("name", name)
+				.register(registry);
+	}
+	
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(taskRequestExecutor());
+		configurer.setDefaultTimeout(timeout.toMillis());
+	}
+	
+	// Thread.ofVirtual().name(prefix, 0).factory() when the runtime has virtual threads, the source level
+	// of this project predates them so they are looked up reflectively
+	private ThreadFactory virtualThreadFactory(String threadNamePrefix) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,98 @@
+package com.todolist.task.config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+
+// Starts a new thread for every task instead of pooling them, meant for virtual threads which cost nothing
+// to start. At most maxThreads tasks run at once and queueCapacity more wait for their turn in submission
+// order, anything beyond is rejected like by a full pool
+public class BoundedThreadPerTaskExecutor implements AsyncTaskExecutor {
+	
+	private final ThreadFactory threadFactory;
+	private final int maxThreads;
+	private final int queueCapacity;
+	private final Semaphore running;
+	private final Semaphore admitted;
+	private TaskDecorator taskDecorator;
+	
+	public BoundedThreadPerTaskExecutor(ThreadFactory threadFactory, int maxThreads, int queueCapacity) {
+		if (maxThreads < 1 || queueCapacity < 0 || (long) maxThreads + queueCapacity > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid executor bounds: " + maxThreads + " threads, queue of " + queueCapacity);
+		this.threadFactory = threadFactory;
+		this.maxThreads = maxThreads;
+		this.queueCapacity = queueCapacity;
+		this.running = new Semaphore(maxThreads, true);
+		this.admitted = new Semaphore(maxThreads + queueCapacity);
+	}
+	
+	// applied on the submitting thread like ThreadPoolTaskExecutor does
+	public void setTaskDecorator(TaskDecorator taskDecorator) {
+		this.taskDecorator = taskDecorator;
+	}
+	
+	@Override
+	public void execute(Runnable task) {
+		if (!admitted.tryAcquire())
+			throw new TaskRejectedException("Executor of " + maxThreads + " threads and a queue of " + queueCapacity 
+					+ " is full, did not accept task: " + task);
+		Runnable decorated = taskDecorator == null ? task : taskDecorator.decorate(task);
+		try {
+			threadFactory.newThread(() -> run(decorated)).start();
+		} catch (RuntimeException | Error e) {
+			admitted.release();
+			throw new TaskRejectedException("Executor could not start a thread for task: " + task, e);
+		}
+	}
+	
+	@Override
+	public void execute(Runnable task, long startTimeout) {
+		execute(task);
+	}
+	
+	@Override
+	public Future<?> submit(Runnable task) {
+		FutureTask<Object> future = new FutureTask<Object>(task, null);
+		execute(future);
+		return future;
+	}
+	
+	@Override
+	public <T> Future<T> submit(Callable<T> task) {
+		FutureTask<T> future = new FutureTask<T>(task);
+		execute(future);
+		return future;
+	}
+	
+	private void run(Runnable task) {
+		try {
+			running.acquire();
+		} catch (InterruptedException e) {
+			admitted.release();
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try {
+			task.run();
+		} finally {
+			running.release();
+			admitted.release();
+		}
+	}
+	
+	public int getActiveCount() {
+		return maxThreads - running.availablePermits();
+	}
+	
+	// tasks admitted and waiting for one of the running slots
+	public int getQueueSize() {
+		return Math.max(0, maxThreads + queueCapacity - admitted.availablePermits() - getActiveCount());
+	}
+	
+}
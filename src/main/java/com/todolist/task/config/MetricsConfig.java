@@ -0,0 +1,61 @@
+package com.todolist.task.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.todolist.task.metrics.InFlightRequestInterceptor;
+import com.todolist.task.metrics.RequestStatementsInterceptor;
+import com.todolist.task.metrics.SqlStatementMetrics;
+import com.todolist.task.metrics.StatementMetricsDataSource;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+	
+	@Autowired
+	MeterRegistry meterRegistry;
+	
+	@Autowired
+	SqlStatementMetrics sqlStatementMetrics;
+	
+	// Records @Timed service methods as the tasks.service timer tagged by class and method
+	@Bean
+	public TimedAspect timedAspect() {
+		return new TimedAspect(meterRegistry);
+	}
+	
+	// Wraps the data source so its statements are timed, the metrics are handed over once they exist
+	// rather than looked up while the data source is still starting
+	@Bean
+	public static BeanPostProcessor statementMetricsPostProcessor() {
+		return new BeanPostProcessor() {
+			@Override
+			public Object postProcessAfterInitialization(Object bean, String beanName) {
+				if (bean instanceof DataSource && !(bean instanceof StatementMetricsDataSource))
+					return new StatementMetricsDataSource((DataSource) bean);
+				return bean;
+			}
+		};
+	}
+	
+	@Autowired
+	public void timeStatements(DataSource dataSource) {
+		if (dataSource instanceof StatementMetricsDataSource)
+			((StatementMetricsDataSource) dataSource).setMetrics(sqlStatementMetrics);
+	}
+	
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new InFlightRequestInterceptor(meterRegistry));
+		registry.addInterceptor(new RequestStatementsInterceptor(sqlStatementMetrics));
+	}
+	
+}
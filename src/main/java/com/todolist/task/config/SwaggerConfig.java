@@ -1,12 +1,20 @@
 package com.todolist.task.config;
 
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.config.annotation.DelegatingWebMvcConfiguration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+
+import com.fasterxml.classmate.TypeResolver;
 
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.builders.RequestHandlerSelectors;
+import springfox.documentation.schema.AlternateTypeRules;
+import springfox.documentation.schema.WildcardType;
 import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
@@ -15,13 +23,20 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
 @Configuration
 @EnableSwagger2
-public class SwaggerConfig extends WebMvcConfigurationSupport {
+public class SwaggerConfig extends DelegatingWebMvcConfiguration {
+
+	@Autowired
+	TypeResolver typeResolver;
 
 	@Bean
 	public Docket taskApi() {
 		return new Docket(DocumentationType.SWAGGER_2)
 				.select().apis(RequestHandlerSelectors.basePackage("com.todolist.task.controllers")).build()
-				.enable(true).apiInfo(metaData());
+				.enable(true).apiInfo(metaData())
+				// handlers answer asynchronously, document the response entity the future completes with
+				.alternateTypeRules(AlternateTypeRules.newRule(
+						typeResolver.resolve(CompletableFuture.class, typeResolver.resolve(ResponseEntity.class, WildcardType.class)),
+						typeResolver.resolve(WildcardType.class)));
 				//.paths(regex("/*"))
 				//.build()
 				//.apiInfo(metaData());
@@ -1,5 +1,9 @@
 package com.todolist.task.constant;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 public enum TaskConstant {
 	;
 	public enum Status {
@@ -12,13 +16,70 @@ public enum TaskConstant {
 		;
 		public static final String subject = "subject is a required field";
 		public static final String status = "status is a required field";
+		public static final String ids = "ids is a required field";
+		public static final String query = "q is a required field";
+		public static final String prefix = "prefix is a required field";
+		public static final String fields = "fields must name at least one field";
+	}
+	
+	public enum Paging {
+		;
+		public static final int maxLimit = 500;
+	}
+	
+	public enum Search {
+		;
+		public static final String defaultLimit = "20";
+		// terms of a query beyond it are ignored
+		public static final int maxTerms = 10;
+		// words a prefix term may expand to
+		public static final int maxPrefixTerms = 1000;
+	}
+	
+	public enum Suggest {
+		;
+		public static final String defaultLimit = "10";
+		// one keystroke reads at most this many subjects
+		public static final int maxLimit = 50;
+	}
+	
+	public enum Changes {
+		;
+		public static final String defaultLimit = "100";
+	}
+	
+	public enum Fields {
+		;
+		// task attributes a sparse fieldset may name, a response writes them in this order
+		public static final List<String> all = Collections.unmodifiableList(
+				Arrays.asList("id", "subject", "description", "status", "version"));
+	}
+	
+	public enum Batch {
+		;
+		public static final int maxSize = 10000;
+		// ids per IN list of a bulk statement
+		public static final int chunkSize = 500;
+		public static final String created = "created";
+		public static final String failed = "failed";
+	}
+	
+	public enum ContentType {
+		;
+		public static final String ndjson = "application/x-ndjson";
+		// binary encodings of the same JSON model, negotiated with Accept and Content-Type
+		public static final String cbor = "application/cbor";
+		public static final String smile = "application/x-jackson-smile";
 	}
 	
 	public enum Response {
 		;
 		public static final String success = "success";
+		public static final String MSG_304 = "The resource has not been modified since the version given in If-None-Match";
 		public static final String MSG_400 = "Parameters are mismatched";
 		public static final String MSG_404 = "The resource you were trying to reach is not found";
+		public static final String MSG_412 = "The task has been modified since the version given in If-Match";
 		public static final String MSG_500 = "Interal server error";
+		public static final String MSG_503 = "The server is too busy to handle the request, please retry later";
 	}
 }
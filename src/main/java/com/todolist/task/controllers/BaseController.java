@@ -1,8 +1,72 @@
 package com.todolist.task.controllers;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.todolist.task.admission.AdaptiveLimit;
+import com.todolist.task.admission.TaskAdmission;
+import com.todolist.task.exception.TaskException;
 
 @RestController
 public class BaseController {
 	
+	@Autowired
+	TaskExecutor taskRequestExecutor;
+	
+	@Autowired
+	TaskAdmission taskAdmission;
+	
+	// Runs a service call on the bounded request executor, so the container thread is given back while
+	// the call waits on the database. A call over the read or write concurrency limit, or once the executor
+	// queue is full, is rejected at once. The permit measures the call from admission to completion,
+	// a call failing for another reason than a TaskException of the request is counted as dropped
+	protected <T> CompletableFuture<T> async(Callable<T> call) {
+		return async(taskAdmission.admit(method()), call);
+	}
+	
+	// A call over many tasks, admitted under the bulk limit so its latency is kept out of the write limit
+	protected <T> CompletableFuture<T> asyncBulk(Callable<T> call) {
+		return async(taskAdmission.admitBulk(), call);
+	}
+	
+	private <T> CompletableFuture<T> async(AdaptiveLimit.Permit permit, Callable<T> call) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			taskRequestExecutor.execute(() -> {
+				boolean dropped = false;
+				try {
+					future.complete(call.call());
+				} catch (TaskException e) {
+					future.completeExceptionally(e);
+				} catch (Throwable e) {
+					dropped = true;
+					future.completeExceptionally(e);
+				} finally {
+					permit.release(dropped);
+				}
+			});
+		} catch (RuntimeException e) {
+			permit.release(true);
+			throw e;
+		}
+		return future;
+	}
+	
+	private static String method() {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		return attributes instanceof ServletRequestAttributes ? ((ServletRequestAttributes) attributes).getRequest().getMethod() : null;
+	}
+	
+	// The response status was already set by checkNotModified, there is no body to write
+	protected <T> CompletableFuture<T> notModified() {
+		return CompletableFuture.completedFuture(null);
+	}
+	
 }
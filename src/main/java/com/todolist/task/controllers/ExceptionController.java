@@ -1,29 +1,83 @@
 package com.todolist.task.controllers;
 
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.servlet.HandlerMapping;
 
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.exception.TaskBadRequestException;
+import com.todolist.task.exception.TaskConflictException;
+import com.todolist.task.exception.TaskException;
 import com.todolist.task.model.ErrorResponse;
 
+import io.micrometer.core.instrument.Metrics;
+
 @ControllerAdvice
 public class ExceptionController {
 	
+	// Retry-After of a 503, time for the limits to settle before the client comes back
+	@Value("${task.admission.retry-after:1s}")
+	Duration retryAfter = Duration.ofSeconds(1);
+	
 	// For exception class handling and always return HTTP status code is 500 for internal server error
 	@ExceptionHandler(Exception.class)
-	public ResponseEntity<ErrorResponse> exceptionHandler(Exception ex) {
+	public ResponseEntity<ErrorResponse> exceptionHandler(Exception ex, HttpServletRequest request) {
+		countError(request, ex instanceof TaskException ? "task" : "server");
 		ErrorResponse error = new ErrorResponse();
 		error.setErrorCode(HttpStatus.INTERNAL_SERVER_ERROR.value());
 		error.setMessage("Unexpected error : " +ex.getMessage());
 		return new ResponseEntity<ErrorResponse>(error, HttpStatus.INTERNAL_SERVER_ERROR);
 	}
 	
+	// For optimistic locking conflict and always return HTTP status code is 412 for precondition failed
+	@ExceptionHandler(TaskConflictException.class)
+	public ResponseEntity<ErrorResponse> conflictHandler(TaskConflictException ex, HttpServletRequest request) {
+		countError(request, "task");
+		ErrorResponse error = new ErrorResponse();
+		error.setErrorCode(HttpStatus.PRECONDITION_FAILED.value());
+		error.setMessage(ex.getMessage());
+		return new ResponseEntity<ErrorResponse>(error, HttpStatus.PRECONDITION_FAILED);
+	}
+	
+	// For malformed request headers and parameters and always return HTTP status code is 400 for bad requests
+	@ExceptionHandler(TaskBadRequestException.class)
+	public ResponseEntity<ErrorResponse> badRequestHandler(TaskBadRequestException ex, HttpServletRequest request) {
+		countError(request, "validation");
+		ErrorResponse error = new ErrorResponse();
+		error.setErrorCode(HttpStatus.BAD_REQUEST.value());
+		error.setMessage(ex.getMessage());
+		return new ResponseEntity<ErrorResponse>(error, HttpStatus.BAD_REQUEST);
+	}
+	
+	// For requests rejected over a concurrency limit, by a full executor or timed out while waiting, always return 
+	// HTTP status code is 503 for service unavailable
+	@ExceptionHandler({RejectedExecutionException.class, AsyncRequestTimeoutException.class})
+	public ResponseEntity<ErrorResponse> unavailableHandler(Exception ex, HttpServletRequest request) {
+		countError(request, "unavailable");
+		ErrorResponse error = new ErrorResponse();
+		error.setErrorCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+		error.setMessage(TaskConstant.Response.MSG_503);
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.getSeconds())));
+		return new ResponseEntity<ErrorResponse>(error, headers, HttpStatus.SERVICE_UNAVAILABLE);
+	}
+	
 	// For constraint validation exception and always return HTTP status code is 400 for bad requests
 	@ExceptionHandler
-    public ResponseEntity<ErrorResponse> handleException(MethodArgumentNotValidException exception) {
+    public ResponseEntity<ErrorResponse> handleException(MethodArgumentNotValidException exception, HttpServletRequest request) {
+		countError(request, "validation");
         String errorMsg = exception.getBindingResult().getFieldErrors().stream()
                 .map(DefaultMessageSourceResolvable::getDefaultMessage)
                 .findFirst()
@@ -34,4 +88,13 @@ public class ExceptionController {
 		return new ResponseEntity<ErrorResponse>(error, HttpStatus.BAD_REQUEST);
     }
 	
+	// Error counters keyed by route and by kind, the global registry holds the actuator registries
+	private void countError(HttpServletRequest request, String type) {
+		Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		Metrics.counter("tasks.http.errors", 
+				"method", request.getMethod(), 
+				"uri", uri != null ? uri.toString() : "UNKNOWN", 
+				"type", type).increment();
+	}
+	
 }
@@ -1,10 +1,15 @@
 package com.todolist.task.controllers;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import javax.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,14 +18,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.todolist.task.cache.TaskJsonCache;
+import com.todolist.task.cache.TaskListVersion;
 import com.todolist.task.constant.TaskConstant;
 import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEventStream;
+import com.todolist.task.exception.TaskBadRequestException;
+import com.todolist.task.exception.TaskConflictException;
 import com.todolist.task.exception.TaskException;
+import com.todolist.task.model.BatchResponse;
+import com.todolist.task.model.BulkDeleteRequest;
+import com.todolist.task.model.BulkDeleteResponse;
+import com.todolist.task.model.BulkStatusRequest;
+import com.todolist.task.model.BulkStatusResponse;
 import com.todolist.task.model.SuccessResponse;
+import com.todolist.task.model.TaskChanges;
+import com.todolist.task.model.TaskFields;
+import com.todolist.task.model.TaskPage;
+import com.todolist.task.model.TaskSearchResult;
+import com.todolist.task.model.TaskSuggestion;
+import com.todolist.task.model.TaskStats;
 import com.todolist.task.model.TaskStatus;
 import com.todolist.task.services.TaskService;
+import com.todolist.task.stats.TaskCounters;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -30,30 +57,203 @@ import io.swagger.annotations.ApiResponses;
 @RestController
 @Api(value="To-do-list Management")
 public class TaskController extends BaseController {
+	
+	private static final MediaType CBOR = MediaType.parseMediaType(TaskConstant.ContentType.cbor);
+	private static final MediaType SMILE = MediaType.parseMediaType(TaskConstant.ContentType.smile);
+	private static final String CBOR_FORMAT = "cbor";
+	private static final String SMILE_FORMAT = "smile";
 
 	@Autowired
 	TaskService taskService;
 	
-	@ApiOperation(value = "View all items in the list")
+	@Autowired
+	TaskListVersion taskListVersion;
+	
+	@Autowired
+	TaskJsonCache taskJsonCache;
+	
+	@Autowired
+	TaskCounters taskCounters;
+	
+	@Autowired
+	TaskEventStream taskEventStream;
+	
+	@ApiOperation(value = "View all items in the list, fields names the ones to retrieve such as fields=id,subject,status", 
+			response = Task.class, responseContainer = "List")
 	@ApiResponses(value = {
 			@ApiResponse(code = 200, message = "Retrieve list are success"),
+			@ApiResponse(code = 304, message = TaskConstant.Response.MSG_304),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
 			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@GetMapping("/tasks")
-	private ResponseEntity<List<Task>> getAllTasks() {
-		return new ResponseEntity<List<Task>>(taskService.getAllTasks(), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<?>> getAllTasks(@RequestParam(required = false) String fields, 
+			WebRequest request) {
+		// the list version is taken before loading, so a concurrent write can only make the tag older than the body
+		long version = taskListVersion.get();
+		String format = binaryFormat(request);
+		String eTag = taskListVersion.eTag(version, format);
+		if (request.checkNotModified(eTag))
+			return notModified();
+		// a sparse fieldset is selected and written as asked, the cached encodings hold every field
+		if (fields != null)
+			return async(() -> ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT)
+					.body(taskService.getAllTaskFields(fields)));
+		// an unchanged list is written from its cached encoding without loading nor serializing anything
+		if (format == null)
+			return async(() -> ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_JSON_UTF8)
+					.body(taskJsonCache.list(version, taskService::getAllTasks)));
+		return async(() -> ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(taskService.getAllTasks()));
+	}
+	
+	@ApiOperation(value = "View items in the list page by page, pass nextCursor of the previous page as after")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Retrieve page is success"),
+			@ApiResponse(code = 304, message = TaskConstant.Response.MSG_304),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping(value = "/tasks", params = "limit")
+	private CompletableFuture<ResponseEntity<TaskPage>> getTaskPage(@RequestParam(required = false) String after, 
+			@RequestParam int limit, @RequestParam(required = false) String status, 
+			@RequestParam(required = false) String fields, WebRequest request) throws TaskException {
+		checkNoFields(fields);
+		String eTag = taskListVersion.eTag();
+		if (request.checkNotModified(eTag))
+			return notModified();
+		return async(() -> ResponseEntity.ok().eTag(eTag).body(taskService.getTaskPage(after, limit, status)));
+	}
+	
+	@ApiOperation(value = "View items in the list having the given status, pending or done")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Retrieve list are success"),
+			@ApiResponse(code = 304, message = TaskConstant.Response.MSG_304),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping(value = "/tasks", params = {"status", "!limit"})
+	private CompletableFuture<ResponseEntity<List<Task>>> getTasksByStatus(@RequestParam String status, 
+			@RequestParam(required = false) String fields, WebRequest request) throws TaskException {
+		checkNoFields(fields);
+		String eTag = taskListVersion.eTag();
+		if (request.checkNotModified(eTag))
+			return notModified();
+		return async(() -> ResponseEntity.ok().eTag(eTag).body(taskService.getTasksByStatus(status)));
+	}
+	
+	@ApiOperation(value = "Export all items in the list as newline-delimited JSON")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Export is started"),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping(value = "/tasks/export", produces = TaskConstant.ContentType.ndjson)
+	private ResponseEntity<StreamingResponseBody> exportTasks() {
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType(TaskConstant.ContentType.ndjson))
+				.body(out -> taskService.exportTasks(out));
 	}
 	
-	@ApiOperation(value = "View a single task in the list")
+	@ApiOperation(value = "Search tasks by the words of their subject and description, best matches first. "
+			+ "Every word of q must match, a word ending with * matches as a prefix")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Search is success"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping("/tasks/search")
+	private CompletableFuture<ResponseEntity<TaskSearchResult>> searchTasks(@RequestParam(required = false) String q, 
+			@RequestParam(defaultValue = TaskConstant.Search.defaultLimit) int limit) {
+		return async(() -> new ResponseEntity<TaskSearchResult>(taskService.searchTasks(q, limit), HttpStatus.OK));
+	}
+	
+	@ApiOperation(value = "Suggest the subjects starting with a prefix, ignoring case")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Retrieve suggestions is success"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping("/tasks/suggest")
+	private CompletableFuture<ResponseEntity<List<TaskSuggestion>>> suggestTasks(@RequestParam(required = false) String prefix, 
+			@RequestParam(defaultValue = TaskConstant.Suggest.defaultLimit) int limit) {
+		return async(() -> new ResponseEntity<List<TaskSuggestion>>(taskService.suggestTasks(prefix, limit), HttpStatus.OK));
+	}
+	
+	@ApiOperation(value = "Retrieve the tasks written and the ids deleted since a version, oldest change first. "
+			+ "Start with since=0 and pass the version of each response as the next since, more tells another page is ready. "
+			+ "reset means the deletes since then are gone, the tasks have to be reloaded and the sync goes on from its version")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Retrieve changes is success"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping("/tasks/changes")
+	private CompletableFuture<ResponseEntity<TaskChanges>> getTaskChanges(@RequestParam(defaultValue = "0") long since, 
+			@RequestParam(defaultValue = TaskConstant.Changes.defaultLimit) int limit) {
+		return async(() -> new ResponseEntity<TaskChanges>(taskService.getChanges(since, limit), HttpStatus.OK));
+	}
+	
+	@ApiOperation(value = "Stream the committed task writes as server-sent events created, updated, status-changed and deleted. "
+			+ "A reconnecting client passes the id of the last event it received as Last-Event-ID, a reset event means "
+			+ "the missed events are gone and the tasks have to be reloaded")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Subscribe is success"),
+			@ApiResponse(code = 503, message = TaskConstant.Response.MSG_503)
+	})
+	@GetMapping(value = "/tasks/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	private ResponseEntity<ResponseBodyEmitter> streamTaskEvents(
+			@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+		return ResponseEntity.ok()
+				.contentType(MediaType.TEXT_EVENT_STREAM)
+				.cacheControl(CacheControl.noCache())
+				.body(taskEventStream.subscribe(lastEventId));
+	}
+	
+	@ApiOperation(value = "View the number of tasks in total and by status")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Retrieve statistics is success"),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@GetMapping("/tasks/stats")
+	private ResponseEntity<TaskStats> getTaskStats() {
+		return new ResponseEntity<TaskStats>(taskCounters.stats(), HttpStatus.OK);
+	}
+	
+	@ApiOperation(value = "View a single task in the list, fields names the ones to retrieve such as fields=id,subject,status", 
+			response = Task.class)
 	@ApiResponses(value = {
 			@ApiResponse(code = 200, message = "Retrieve an item is success"),
+			@ApiResponse(code = 304, message = TaskConstant.Response.MSG_304),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
 			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@GetMapping("/tasks/{id}")
-	private ResponseEntity<Task> getTask(@PathVariable int id) throws TaskException {
-		return new ResponseEntity<Task>(taskService.getTaskById(id), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<?>> getTask(@PathVariable int id, @RequestParam(required = false) String fields, 
+			WebRequest request) {
+		if (fields != null)
+			return async(() -> {
+				TaskFields task = taskService.getTaskFields(id, fields);
+				String eTag = eTag(task.getVersion(), binaryFormat(request));
+				if (request.checkNotModified(eTag))
+					return null;
+				return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(task);
+			});
+		// hot tasks come from the cache, so the version tag is known without reading the row
+		// and the body is their cached encoding
+		return async(() -> {
+			Task task = taskService.getTaskById(id);
+			String format = binaryFormat(request);
+			String eTag = eTag(task.getVersion(), format);
+			if (request.checkNotModified(eTag))
+				return null;
+			if (format != null)
+				return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(task);
+			return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).contentType(MediaType.APPLICATION_JSON_UTF8)
+					.body(taskJsonCache.get(task));
+		});
 	}
 	
 	@ApiOperation(value = "Add a task to the list")
@@ -64,9 +264,22 @@ public class TaskController extends BaseController {
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@PostMapping("/tasks")
-	private ResponseEntity<SuccessResponse> saveTask(@Valid @RequestBody Task task) throws TaskException {
-		taskService.save(task);
-		return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<SuccessResponse>> saveTask(@Valid @RequestBody Task task) {
+		return async(() -> {
+			taskService.save(task);
+			return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+		});
+	}
+	
+	@ApiOperation(value = "Add many tasks to the list at once, the result of every item is reported")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Batch is processed"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@PostMapping("/tasks/batch")
+	private CompletableFuture<ResponseEntity<BatchResponse>> saveTasks(@RequestBody List<Task> tasks) {
+		return asyncBulk(() -> new ResponseEntity<BatchResponse>(taskService.saveAll(tasks), HttpStatus.OK));
 	}
 	
 	@ApiOperation(value = "Edit an existing task")
@@ -74,12 +287,17 @@ public class TaskController extends BaseController {
 			@ApiResponse(code = 200, message = "Edit an item is success"),
 			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
 			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
+			@ApiResponse(code = 412, message = TaskConstant.Response.MSG_412),
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@PutMapping("/tasks/{id}")
-	private ResponseEntity<SuccessResponse> updateTask(@Valid @RequestBody Task task, @PathVariable int id) throws TaskException {
-		taskService.update(id, task);
-		return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<SuccessResponse>> updateTask(@Valid @RequestBody Task task, @PathVariable int id,
+			@RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws TaskException {
+		Long expectedVersion = parseIfMatch(ifMatch);
+		return async(() -> {
+			taskService.update(id, task, expectedVersion);
+			return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+		});
 	}
 	
 	@ApiOperation(value = "Set the task status")
@@ -87,12 +305,30 @@ public class TaskController extends BaseController {
 			@ApiResponse(code = 200, message = "Edit an item is success"),
 			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
 			@ApiResponse(code = 404, message = TaskConstant.Response.MSG_404),
+			@ApiResponse(code = 412, message = TaskConstant.Response.MSG_412),
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@PatchMapping("/tasks/{id}")
-	private ResponseEntity<SuccessResponse> updateTaskStatus(@Valid @RequestBody TaskStatus taskStatus, @PathVariable int id) throws TaskException {
-		taskService.updateTaskStatus(taskStatus.getStatus(), id);
-		return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<SuccessResponse>> updateTaskStatus(@Valid @RequestBody TaskStatus taskStatus, 
+			@PathVariable int id, @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) 
+			throws TaskException {
+		Long expectedVersion = parseIfMatch(ifMatch);
+		return async(() -> {
+			taskService.updateTaskStatus(taskStatus.getStatus(), id, expectedVersion);
+			return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+		});
+	}
+
+	@ApiOperation(value = "Set the status of many tasks at once, the ids not found are reported")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Bulk update is processed"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@PatchMapping("/tasks/status")
+	private CompletableFuture<ResponseEntity<BulkStatusResponse>> updateTasksStatus(@Valid @RequestBody BulkStatusRequest request) {
+		return asyncBulk(() -> new ResponseEntity<BulkStatusResponse>(
+				taskService.updateTasksStatus(request.getStatus(), request.getIds()), HttpStatus.OK));
 	}
 
 	@ApiOperation(value = "Delete a task from the list")
@@ -102,8 +338,84 @@ public class TaskController extends BaseController {
 			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
 	})
 	@DeleteMapping("/tasks/{id}")
-	private ResponseEntity<SuccessResponse> deleteTask(@PathVariable int id) throws TaskException {
-		taskService.delete(id);
-		return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+	private CompletableFuture<ResponseEntity<SuccessResponse>> deleteTask(@PathVariable int id) {
+		return async(() -> {
+			taskService.delete(id);
+			return new ResponseEntity<SuccessResponse>(new SuccessResponse(TaskConstant.Response.success), HttpStatus.OK);
+		});
+	}
+	
+	@ApiOperation(value = "Delete many tasks at once by id, the ids not found are reported")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Bulk delete is processed"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@DeleteMapping("/tasks")
+	private CompletableFuture<ResponseEntity<BulkDeleteResponse>> deleteTasks(@Valid @RequestBody BulkDeleteRequest request) {
+		return asyncBulk(() -> new ResponseEntity<BulkDeleteResponse>(taskService.deleteTasks(request.getIds()), HttpStatus.OK));
+	}
+	
+	@ApiOperation(value = "Delete every task having the given status, pending or done")
+	@ApiResponses(value = {
+			@ApiResponse(code = 200, message = "Bulk delete is processed"),
+			@ApiResponse(code = 400, message = TaskConstant.Response.MSG_400),
+			@ApiResponse(code = 500, message = TaskConstant.Response.MSG_500)
+	})
+	@DeleteMapping(value = "/tasks", params = "status")
+	private CompletableFuture<ResponseEntity<BulkDeleteResponse>> deleteTasksByStatus(@RequestParam String status) {
+		return asyncBulk(() -> new ResponseEntity<BulkDeleteResponse>(taskService.deleteTasksByStatus(status), HttpStatus.OK));
+	}
+	
+	// null for JSON unless the client prefers one of the binary encodings, those are written by their message converter
+	private String binaryFormat(WebRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+		if (accept == null)
+			return null;
+		List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+		MediaType.sortBySpecificityAndQuality(acceptedTypes);
+		for (MediaType acceptedType : acceptedTypes) {
+			if (acceptedType.includes(MediaType.APPLICATION_JSON))
+				return null;
+			if (acceptedType.includes(CBOR))
+				return CBOR_FORMAT;
+			if (acceptedType.includes(SMILE))
+				return SMILE_FORMAT;
+		}
+		return null;
+	}
+	
+	// The encodings of a task version are different bytes under the same URL, so each one gets its own strong tag
+	private static String eTag(long version, String binaryFormat) {
+		return "\"" + version + (binaryFormat == null ? "" : "-" + binaryFormat) + "\"";
+	}
+	
+	// Only the whole list and a single task select a sparse fieldset, a filtered or paged list would otherwise be
+	// answered with every field as if fields had not been asked
+	private void checkNoFields(String fields) throws TaskException {
+		if (fields != null)
+			throw new TaskBadRequestException("fields is only supported on GET /tasks and GET /tasks/{id}, not with status or limit");
+	}
+	
+	// If-Match carries the task version as a strong entity tag, "*" or no header means any version.
+	// A weak tag never matches under the strong comparison If-Match requires, so the write fails its precondition,
+	// and one conditional UPDATE checks a single version so a list of tags is refused like a malformed one
+	private Long parseIfMatch(String ifMatch) throws TaskException {
+		if (ifMatch == null || ifMatch.trim().equals("*"))
+			return null;
+		String tag = ifMatch.trim();
+		if (tag.startsWith("W/") && tag.indexOf(',') < 0)
+			throw new TaskConflictException("If-Match " + tag + " is a weak entity tag, it never matches a task version");
+		if (tag.length() > 1 && tag.startsWith("\"") && tag.endsWith("\""))
+			tag = tag.substring(1, tag.length() - 1);
+		// the tag of any encoding names the same task version
+		for (String format : new String[] { CBOR_FORMAT, SMILE_FORMAT })
+			if (tag.endsWith("-" + format))
+				tag = tag.substring(0, tag.length() - format.length() - 1);
+		try {
+			return Long.valueOf(tag);
+		} catch (NumberFormatException e) {
+			throw new TaskBadRequestException("If-Match must be a single task version entity tag or *: " + ifMatch);
+		}
 	}
 }
@@ -1,11 +1,24 @@
 package com.todolist.task.entities;
 
+import java.util.Locale;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.todolist.task.constant.TaskConstant;
 import com.todolist.task.validator.ValidTaskStatus;
 
@@ -13,21 +26,45 @@ import io.swagger.annotations.ApiModelProperty;
 import io.swagger.annotations.ApiModelProperty.AccessMode;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = Task.SUBJECT_KEY_CONSTRAINT, columnNames = "subject_key"),
+		indexes = {
+				@Index(name = "idx_task_status_id", columnList = "status, id"),
+				@Index(name = "idx_task_change_version", columnList = "change_version")
+		})
 public class Task {
+	public static final String SUBJECT_KEY_CONSTRAINT = "uk_task_subject_key";
+	
 	@Id
-	@GeneratedValue
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_seq")
+	@SequenceGenerator(name = "task_seq", sequenceName = "task_seq", allocationSize = 500)
 	@ApiModelProperty(value = "The database generated task ID (Please remove this key when you create item)", accessMode=AccessMode.READ_ONLY)
 	private int id;
 	@ApiModelProperty(value = "a subject of the task", required=true)
 	@NotNull(message = TaskConstant.Required.subject)
 	@NotEmpty(message = TaskConstant.Required.subject)
 	private String subject;
+	// lower-cased subject, the unique index on it enforces case-insensitive uniqueness without lower() scans
+	@JsonIgnore
+	@ApiModelProperty(hidden = true)
+	@Column(name = "subject_key", nullable = false)
+	private String subjectKey;
 	@ApiModelProperty(value = "a free text content or detail for the task")
 	private String description;
 	@ApiModelProperty(value = "a status of the task, whether it is pending or done", required=true)
 	@NotNull(message = TaskConstant.Required.status)
 	@ValidTaskStatus
+	// kept as a one byte code, the (status, id) index serves listing a status in id order
+	@Convert(converter = TaskStatusConverter.class)
+	@Column(columnDefinition = "tinyint")
 	private String status;
+	@ApiModelProperty(value = "The version of the task, it is increased by every change and can be sent back in If-Match", accessMode=AccessMode.READ_ONLY)
+	@Version
+	private long version;
+	// position of the last write of the task among every task write, clients syncing changes read the index on it
+	@JsonIgnore
+	@ApiModelProperty(hidden = true)
+	@Column(name = "change_version", nullable = false)
+	private long changeVersion;
 	
 	public Task() {
 		
@@ -35,13 +72,13 @@ public class Task {
 	
 	public Task(int id, String subject, String description, String status) {
 		this.id = id;
-		this.subject = subject;
+		setSubject(subject);
 		this.description = description;
 		this.status = status;
 	}
 	
 	public Task(String subject, String description, String status) {
-		this.subject = subject;
+		setSubject(subject);
 		this.description = description;
 		this.status = status;
 	}
@@ -57,6 +94,10 @@ public class Task {
 	}
 	public void setSubject(String subject) {
 		this.subject = subject;
+		this.subjectKey = subjectKeyOf(subject);
+	}
+	public String getSubjectKey() {
+		return subjectKey;
 	}
 	public String getStatus() {
 		return status;
@@ -65,6 +106,22 @@ public class Task {
 		this.status = status.toLowerCase();
 	}
 
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	public long getChangeVersion() {
+		return changeVersion;
+	}
+
+	public void setChangeVersion(long changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+
 	public String getDescription() {
 		return description;
 	}
@@ -73,5 +130,14 @@ public class Task {
 		this.description = description;
 	}
 	
+	@PrePersist
+	@PreUpdate
+	private void normalizeSubjectKey() {
+		this.subjectKey = subjectKeyOf(subject);
+	}
+	
+	public static String subjectKeyOf(String subject) {
+		return subject == null ? null : subject.toLowerCase(Locale.ROOT);
+	}
 	
 }
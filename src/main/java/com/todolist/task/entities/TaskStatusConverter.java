@@ -0,0 +1,35 @@
+package com.todolist.task.entities;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+import com.todolist.task.constant.TaskConstant;
+
+// Stores a status as a small code instead of its name in a tinyint column, the codes are persisted
+// so new statuses must only be appended
+@Converter
+public class TaskStatusConverter implements AttributeConverter<String, Integer> {
+	
+	private static final String[] statuses = { TaskConstant.Status.pending, TaskConstant.Status.done };
+	
+	@Override
+	public Integer convertToDatabaseColumn(String status) {
+		if (status == null)
+			return null;
+		for (int code = 0; code < statuses.length; code++) {
+			if (statuses[code].equalsIgnoreCase(status))
+				return code;
+		}
+		throw new IllegalArgumentException("Invalid task status: " + status);
+	}
+	
+	@Override
+	public String convertToEntityAttribute(Integer code) {
+		if (code == null)
+			return null;
+		if (code < 0 || code >= statuses.length)
+			throw new IllegalArgumentException("Invalid task status code: " + code);
+		return statuses[code];
+	}
+	
+}
@@ -0,0 +1,44 @@
+package com.todolist.task.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+// Left behind by a deleted task so clients syncing changes learn about the delete, ids are never reused
+@Entity
+@Table(indexes = @Index(name = "idx_task_tombstone_change_version", columnList = "change_version"))
+public class TaskTombstone {
+	
+	@Id
+	private int id;
+	@Column(name = "change_version", nullable = false)
+	private long changeVersion;
+	
+	public TaskTombstone() {
+		
+	}
+	
+	public TaskTombstone(int id, long changeVersion) {
+		this.id = id;
+		this.changeVersion = changeVersion;
+	}
+	
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	public long getChangeVersion() {
+		return changeVersion;
+	}
+	
+	public void setChangeVersion(long changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+	
+}
@@ -0,0 +1,43 @@
+package com.todolist.task.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// The single row holding the change version up to which the tombstones were pruned, so a client behind it is
+// still reset after a restart has lowered the visible version by the writes that rolled back last
+@Entity
+public class TaskTombstoneHorizon {
+	
+	public static final int ID = 1;
+	
+	@Id
+	private int id = ID;
+	@Column(name = "change_version", nullable = false)
+	private long changeVersion;
+	
+	public TaskTombstoneHorizon() {
+	
+	}
+	
+	public TaskTombstoneHorizon(long changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+	
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	public long getChangeVersion() {
+		return changeVersion;
+	}
+	
+	public void setChangeVersion(long changeVersion) {
+		this.changeVersion = changeVersion;
+	}
+	
+}
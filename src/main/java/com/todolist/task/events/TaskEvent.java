@@ -0,0 +1,64 @@
+package com.todolist.task.events;
+
+import com.todolist.task.entities.Task;
+
+// Published by TaskService for every task written, listeners that must only see committed
+// changes use @TransactionalEventListener. status is the status after the write and previousStatus
+// the one before it, null when there is none
+public class TaskEvent {
+	
+	public enum Type {
+		CREATED, UPDATED, STATUS_CHANGED, DELETED
+	}
+	
+	private final Type type;
+	private final int id;
+	private final Task task;
+	private final String status;
+	private final String previousStatus;
+	
+	public TaskEvent(Type type, int id, Task task, String status, String previousStatus) {
+		this.type = type;
+		this.id = id;
+		this.task = task;
+		this.status = status;
+		this.previousStatus = previousStatus;
+	}
+	
+	public static TaskEvent created(Task task) {
+		return new TaskEvent(Type.CREATED, task.getId(), task, task.getStatus(), null);
+	}
+	
+	public static TaskEvent updated(Task task, String previousStatus) {
+		return new TaskEvent(Type.UPDATED, task.getId(), task, task.getStatus(), previousStatus);
+	}
+	
+	public static TaskEvent statusChanged(int id, String status, String previousStatus) {
+		return new TaskEvent(Type.STATUS_CHANGED, id, null, status, previousStatus);
+	}
+	
+	public static TaskEvent deleted(int id, String previousStatus) {
+		return new TaskEvent(Type.DELETED, id, null, null, previousStatus);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public Task getTask() {
+		return task;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public String getPreviousStatus() {
+		return previousStatus;
+	}
+	
+}
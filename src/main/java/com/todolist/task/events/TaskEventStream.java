@@ -0,0 +1,267 @@
+package com.todolist.task.events;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+
+// Server-sent events of the committed task writes. Every event is formatted once into the bytes of an SSE
+// frame, kept in a bounded history for Last-Event-ID resumes and queued to each subscriber. A subscriber holds
+// no thread while idle, its queue is drained on the event writers, and one that falls behind by more
+// than its buffer is disconnected and resumes from the history, so a slow client never holds back a task write
+@Component
+public class TaskEventStream {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskEventStream.class);
+	private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+	// sent instead of the missed events when they are no longer in the history, the client reloads the tasks
+	private static final byte[] RESET = "event: reset\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+	
+	private static class Frame {
+		
+		private final long sequence;
+		private final byte[] bytes;
+		
+		private Frame(long sequence, byte[] bytes) {
+			this.sequence = sequence;
+			this.bytes = bytes;
+		}
+		
+	}
+	
+	private class Subscriber {
+		
+		private static final int OPEN = 0;
+		// the response is left to the container
+		private static final int CLOSED = 1;
+		// the response is ended by the drain, once the write it may be blocked in returns
+		private static final int DISCONNECTED = 2;
+		
+		private final ResponseBodyEmitter emitter;
+		private final ArrayBlockingQueue<byte[]> queue;
+		private final AtomicBoolean draining = new AtomicBoolean();
+		private final AtomicInteger state = new AtomicInteger(OPEN);
+		
+		private Subscriber(ResponseBodyEmitter emitter) {
+			this.emitter = emitter;
+			this.queue = new ArrayBlockingQueue<byte[]>(bufferSize);
+		}
+		
+		private void offer(byte[] frame) {
+			if (!queue.offer(frame)) {
+				dropped.increment();
+				logger.debug("Task event subscriber disconnected, {} events behind", queue.size());
+				disconnect();
+				return;
+			}
+			schedule();
+		}
+		
+		private void schedule() {
+			if (draining.compareAndSet(false, true)) {
+				try {
+					taskEventExecutor.execute(this::drain);
+				} catch (RejectedExecutionException e) {
+					draining.set(false);
+					if (end(CLOSED))
+						logger.debug("Task event subscriber is left to time out");
+				}
+			}
+		}
+		
+		// Only one drain runs at a time, so the frames are written in order and the writers never wait for a client
+		private void drain() {
+			while (true) {
+				int current = state.get();
+				if (current != OPEN) {
+					if (current == DISCONNECTED && state.compareAndSet(DISCONNECTED, CLOSED))
+						emitter.complete();
+					return;
+				}
+				byte[] frame = queue.poll();
+				if (frame == null) {
+					draining.set(false);
+					// a frame offered or a disconnect requested after the poll found nobody draining
+					if ((queue.isEmpty() && state.get() == OPEN) || !draining.compareAndSet(false, true))
+						return;
+					continue;
+				}
+				try {
+					emitter.send(frame, MediaType.APPLICATION_OCTET_STREAM);
+				} catch (IOException | IllegalStateException e) {
+					// the container reports the broken connection and completes the request itself
+					if (!end(CLOSED))
+						state.set(CLOSED);
+					return;
+				}
+			}
+		}
+		
+		// Ends the response, the client reconnects with the id of the last event it received
+		private void disconnect() {
+			if (end(DISCONNECTED))
+				schedule();
+		}
+		
+		// The response must be ended before the timeout handling goes on, an idle subscriber has no drain to do it
+		// and a disconnected one may have its drain blocked on the client until then
+		private void timeout() {
+			if (end(CLOSED) || state.compareAndSet(DISCONNECTED, CLOSED))
+				emitter.complete();
+		}
+		
+		// The container completed the request or found the connection broken
+		private void close() {
+			end(CLOSED);
+		}
+		
+		private boolean end(int newState) {
+			if (!state.compareAndSet(OPEN, newState))
+				return false;
+			subscribers.remove(this);
+			queue.clear();
+			return true;
+		}
+		
+	}
+	
+	// distinguishes event ids of this process from the ones handed out before a restart
+	private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+	private final ArrayDeque<Frame> history = new ArrayDeque<Frame>();
+	private final Counter dropped = Metrics.counter("tasks.events.dropped");
+	private long sequence;
+	
+	@Value("${task.events.buffer-size:256}")
+	int bufferSize;
+	
+	@Value("${task.events.history-size:10000}")
+	int historySize;
+	
+	@Value("${task.events.max-subscribers:10000}")
+	int maxSubscribers;
+	
+	@Value("${task.events.timeout:30m}")
+	Duration timeout;
+	
+	@Autowired
+	TaskExecutor taskEventExecutor;
+	
+	@Autowired
+	ObjectMapper objectMapper;
+	
+	public TaskEventStream() {
+		Metrics.gauge("tasks.events.subscribers", subscribers, Set::size);
+	}
+	
+	// Starts with the events after lastEventId when it is given, once the connection times out the client
+	// reconnects with the id of the last event it received
+	public ResponseBodyEmitter subscribe(String lastEventId) {
+		return subscribe(new ResponseBodyEmitter(timeout.toMillis()), lastEventId);
+	}
+	
+	ResponseBodyEmitter subscribe(ResponseBodyEmitter emitter, String lastEventId) {
+		if (subscribers.size() >= maxSubscribers)
+			throw new RejectedExecutionException("Too many task event subscribers");
+		Subscriber subscriber = new Subscriber(emitter);
+		emitter.onCompletion(subscriber::close);
+		emitter.onTimeout(subscriber::timeout);
+		emitter.onError(e -> subscriber.close());
+		synchronized (history) {
+			subscribers.add(subscriber);
+			if (lastEventId != null) {
+				List<byte[]> missed = missedSince(lastEventId);
+				if (missed == null || missed.size() > bufferSize)
+					subscriber.offer(RESET);
+				else
+					missed.forEach(subscriber::offer);
+			}
+		}
+		return emitter;
+	}
+	
+	// The frames after the event id, null when some of them already left the history or the id is unknown
+	private List<byte[]> missedSince(String lastEventId) {
+		int separator = lastEventId.lastIndexOf('-');
+		if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch))
+			return null;
+		long lastSequence;
+		try {
+			lastSequence = Long.parseLong(lastEventId.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (lastSequence > sequence || (lastSequence < sequence && (history.isEmpty() || history.peekFirst().sequence > lastSequence + 1)))
+			return null;
+		List<byte[]> missed = new ArrayList<byte[]>();
+		for (Frame frame : history) {
+			if (frame.sequence > lastSequence)
+				missed.add(frame.bytes);
+		}
+		return missed;
+	}
+	
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskEvent(TaskEvent event) {
+		String data;
+		try {
+			data = objectMapper.writeValueAsString(event);
+		} catch (JsonProcessingException e) {
+			logger.error("Task event {} of task {} is not streamed", event.getType(), event.getId(), e);
+			return;
+		}
+		synchronized (history) {
+			sequence++;
+			byte[] frame = ("id: " + epoch + "-" + sequence + "\nevent: " + name(event.getType()) + "\ndata: " + data + "\n\n")
+					.getBytes(StandardCharsets.UTF_8);
+			history.addLast(new Frame(sequence, frame));
+			if (history.size() > historySize)
+				history.removeFirst();
+			for (Subscriber subscriber : subscribers)
+				subscriber.offer(frame);
+		}
+	}
+	
+	// Keeps idle connections open through proxies and finds the clients that went away
+	@Scheduled(fixedDelayString = "${task.events.heartbeat-interval:PT15S}", 
+			initialDelayString = "${task.events.heartbeat-interval:PT15S}")
+	public void heartbeat() {
+		for (Subscriber subscriber : subscribers)
+			subscriber.offer(HEARTBEAT);
+	}
+	
+	public int subscriberCount() {
+		return subscribers.size();
+	}
+	
+	private static String name(TaskEvent.Type type) {
+		return type.name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+	
+}
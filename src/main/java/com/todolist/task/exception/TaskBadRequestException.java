@@ -0,0 +1,10 @@
+package com.todolist.task.exception;
+
+public class TaskBadRequestException extends TaskException {
+	private static final long serialVersionUID = -2895430261750937184L;
+	
+	public TaskBadRequestException(String errorMessage) {
+		super(errorMessage);
+	}
+	
+}
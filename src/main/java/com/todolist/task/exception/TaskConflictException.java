@@ -0,0 +1,10 @@
+package com.todolist.task.exception;
+
+public class TaskConflictException extends TaskException {
+	private static final long serialVersionUID = 4172093718532467741L;
+	
+	public TaskConflictException(String errorMessage) {
+		super(errorMessage);
+	}
+	
+}
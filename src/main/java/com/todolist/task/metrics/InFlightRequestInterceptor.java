@@ -0,0 +1,65 @@
+package com.todolist.task.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Gauges the requests being handled per route, an asynchronous request is counted from its
+// first dispatch until the dispatch that completes it
+public class InFlightRequestInterceptor extends HandlerInterceptorAdapter {
+	
+	private static final String COUNTER_ATTRIBUTE = InFlightRequestInterceptor.class.getName() + ".counter";
+	
+	private final MeterRegistry meterRegistry;
+	private final ConcurrentMap<String, AtomicInteger> counters = new ConcurrentHashMap<String, AtomicInteger>();
+	
+	public InFlightRequestInterceptor(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+	}
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (request.getAttribute(COUNTER_ATTRIBUTE) == null) {
+			AtomicInteger counter = counter(request.getMethod(), uri(request));
+			counter.incrementAndGet();
+			request.setAttribute(COUNTER_ATTRIBUTE, counter);
+		}
+		return true;
+	}
+	
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		AtomicInteger counter = (AtomicInteger) request.getAttribute(COUNTER_ATTRIBUTE);
+		if (counter != null) {
+			request.removeAttribute(COUNTER_ATTRIBUTE);
+			counter.decrementAndGet();
+		}
+	}
+	
+	private AtomicInteger counter(String method, String uri) {
+		return counters.computeIfAbsent(method + " " + uri, key -> {
+			AtomicInteger counter = new AtomicInteger();
+			Gauge.builder("tasks.http.inflight", counter, AtomicInteger::get)
+					.description("Requests being handled")
+					.tag("method", method)
+					.tag("uri", uri)
+					.register(meterRegistry);
+			return counter;
+		});
+	}
+	
+	static String uri(HttpServletRequest request) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		return pattern != null ? pattern.toString() : "UNKNOWN";
+	}
+	
+}
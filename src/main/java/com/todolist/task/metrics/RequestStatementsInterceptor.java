@@ -0,0 +1,48 @@
+package com.todolist.task.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+// Counts the SQL statements of a request from its first dispatch until the dispatch that completes it,
+// the request executor carries the count over to the threads running the service calls
+public class RequestStatementsInterceptor extends HandlerInterceptorAdapter {
+	
+	private static final String STATEMENTS_ATTRIBUTE = RequestStatementsInterceptor.class.getName() + ".statements";
+	
+	private final SqlStatementMetrics sqlStatementMetrics;
+	
+	public RequestStatementsInterceptor(SqlStatementMetrics sqlStatementMetrics) {
+		this.sqlStatementMetrics = sqlStatementMetrics;
+	}
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		SqlStatementMetrics.RequestStatements statements = 
+				(SqlStatementMetrics.RequestStatements) request.getAttribute(STATEMENTS_ATTRIBUTE);
+		if (statements == null) {
+			statements = sqlStatementMetrics.begin();
+			request.setAttribute(STATEMENTS_ATTRIBUTE, statements);
+		}
+		sqlStatementMetrics.bind(statements);
+		return true;
+	}
+	
+	@Override
+	public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		sqlStatementMetrics.unbind();
+	}
+	
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		sqlStatementMetrics.unbind();
+		SqlStatementMetrics.RequestStatements statements = 
+				(SqlStatementMetrics.RequestStatements) request.getAttribute(STATEMENTS_ATTRIBUTE);
+		if (statements != null) {
+			request.removeAttribute(STATEMENTS_ATTRIBUTE);
+			sqlStatementMetrics.completed(statements, request.getMethod(), InFlightRequestInterceptor.uri(request));
+		}
+	}
+	
+}
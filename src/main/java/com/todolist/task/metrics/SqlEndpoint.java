@@ -0,0 +1,84 @@
+package com.todolist.task.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// /actuator/sql: the SQL statements by total execution time, the Hibernate statistics of every JPQL and
+// criteria query when hibernate.generate_statistics is on, and the latest requests flagged for their statements
+@Component
+@Endpoint(id = "sql")
+public class SqlEndpoint {
+	
+	@Autowired
+	SqlStatementMetrics sqlStatementMetrics;
+	
+	@Autowired
+	MeterRegistry meterRegistry;
+	
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+	
+	@ReadOperation
+	public Map<String, Object> sql() {
+		Map<String, Object> report = new LinkedHashMap<String, Object>();
+		report.put("statements", statements());
+		report.put("queries", queries());
+		report.put("flaggedRequests", sqlStatementMetrics.getFlaggedRequests());
+		return report;
+	}
+	
+	private List<Map<String, Object>> statements() {
+		List<Timer> timers = new ArrayList<Timer>(meterRegistry.find("tasks.sql").timers());
+		timers.sort(Comparator.comparingDouble((Timer timer) -> timer.totalTime(TimeUnit.MILLISECONDS)).reversed());
+		List<Map<String, Object>> statements = new ArrayList<Map<String, Object>>(timers.size());
+		for (Timer timer : timers) {
+			if (timer.count() == 0)
+				continue;
+			Map<String, Object> statement = new LinkedHashMap<String, Object>();
+			statement.put("statement", timer.getId().getTag("statement"));
+			statement.put("count", timer.count());
+			statement.put("totalMillis", timer.totalTime(TimeUnit.MILLISECONDS));
+			statement.put("meanMillis", timer.mean(TimeUnit.MILLISECONDS));
+			statement.put("maxMillis", timer.max(TimeUnit.MILLISECONDS));
+			statements.add(statement);
+		}
+		return statements;
+	}
+	
+	private List<Map<String, Object>> queries() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		List<Map<String, Object>> queries = new ArrayList<Map<String, Object>>();
+		if (!statistics.isStatisticsEnabled())
+			return queries;
+		for (String query : statistics.getQueries()) {
+			QueryStatistics queryStatistics = statistics.getQueryStatistics(query);
+			Map<String, Object> entry = new LinkedHashMap<String, Object>();
+			entry.put("query", SqlStatementMetrics.normalize(query));
+			entry.put("count", queryStatistics.getExecutionCount());
+			entry.put("meanMillis", queryStatistics.getExecutionAvgTime());
+			entry.put("maxMillis", queryStatistics.getExecutionMaxTime());
+			entry.put("rows", queryStatistics.getExecutionRowCount());
+			queries.add(entry);
+		}
+		queries.sort(Comparator.comparingLong((Map<String, Object> entry) -> (Long) entry.get("count")).reversed());
+		return queries;
+	}
+	
+}
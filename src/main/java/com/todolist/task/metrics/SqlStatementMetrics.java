@@ -0,0 +1,240 @@
+package com.todolist.task.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Times every JDBC statement by its text with the literals and the IN lists folded, so one query is one timer
+// whatever its values, and logs the slow ones that way, bound parameters are never read. The statements
+// run for a request are counted, a request issuing too many of them or the same select again and again,
+// as loading rows one by one does, is logged and kept among the flagged requests
+@Component
+public class SqlStatementMetrics {
+	
+	private static final Logger logger = LoggerFactory.getLogger(SqlStatementMetrics.class);
+	// no repeated group, a regex repeating one recurses per repetition and an IN list has thousands of parameters
+	private static final Pattern STRING_LITERAL = Pattern.compile("'[^']*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.$?])\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\([?\\d,\\s]*\\?[?\\d,\\s]*\\)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final String IN_LIST_FOLDED = "in (?...)";
+	private static final String OTHER_STATEMENT = "other";
+	private static final int FLAGGED_REQUESTS = 50;
+	
+	// Statements of one request, shared by the threads working for it. A select with an IN list already reads
+	// many rows at once, running it for chunk after chunk is not counted as a repeat
+	static class RequestStatements {
+	
+		private final AtomicInteger count = new AtomicInteger();
+		private final ConcurrentMap<String, AtomicInteger> selects = new ConcurrentHashMap<String, AtomicInteger>();
+	
+		private void executed(String statement) {
+			count.incrementAndGet();
+			if (statement.regionMatches(true, 0, "select", 0, 6) && !statement.contains(IN_LIST_FOLDED))
+				selects.computeIfAbsent(statement, key -> new AtomicInteger()).incrementAndGet();
+		}
+	
+	}
+	
+	public static class FlaggedRequest {
+	
+		private final String time;
+		private final String method;
+		private final String uri;
+		private final int statements;
+		private final String repeatedStatement;
+		private final int repeats;
+	
+		public FlaggedRequest(String time, String method, String uri, int statements, String repeatedStatement, int repeats) {
+			this.time = time;
+			this.method = method;
+			this.uri = uri;
+			this.statements = statements;
+			this.repeatedStatement = repeatedStatement;
+			this.repeats = repeats;
+		}
+	
+		public String getTime() {
+			return time;
+		}
+	
+		public String getMethod() {
+			return method;
+		}
+	
+		public String getUri() {
+			return uri;
+		}
+	
+		public int getStatements() {
+			return statements;
+		}
+	
+		// the select run the most times by the request
+		public String getRepeatedStatement() {
+			return repeatedStatement;
+		}
+	
+		public int getRepeats() {
+			return repeats;
+		}
+	
+	}
+	
+	private final MeterRegistry meterRegistry;
+	private final Duration slowThreshold;
+	private final int maxStatements;
+	private final int requestMaxStatements;
+	private final int requestMaxRepeats;
+	// keyed by the statements as run, up to a million characters of them
+	private final Cache<String, String> statements = Caffeine.newBuilder()
+			.maximumWeight(1 << 20)
+			.<String, String>weigher((sql, statement) -> sql.length())
+			.build();
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private final Timer otherTimer;
+	private final ThreadLocal<RequestStatements> current = new ThreadLocal<RequestStatements>();
+	private final Deque<FlaggedRequest> flaggedRequests = new ArrayDeque<FlaggedRequest>();
+	
+	@Autowired
+	public SqlStatementMetrics(MeterRegistry meterRegistry, @Value("${task.sql.slow-threshold:100ms}") Duration slowThreshold, 
+			@Value("${task.sql.max-statements:200}") int maxStatements,
+			@Value("${task.sql.request-max-statements:50}") int requestMaxStatements,
+			@Value("${task.sql.request-max-repeats:10}") int requestMaxRepeats) {
+		this.meterRegistry = meterRegistry;
+		this.slowThreshold = slowThreshold;
+		this.maxStatements = maxStatements;
+		this.requestMaxStatements = requestMaxStatements;
+		this.requestMaxRepeats = requestMaxRepeats;
+		this.otherTimer = timer(OTHER_STATEMENT);
+	}
+	
+	public void executed(String sql, long nanos, int batchSize) {
+		String statement = statements.get(sql == null ? OTHER_STATEMENT : sql, SqlStatementMetrics::normalize);
+		Timer timer = timers.get(statement);
+		if (timer == null)
+			timer = timers.size() < maxStatements ? timers.computeIfAbsent(statement, this::timer) : otherTimer;
+		timer.record(nanos, TimeUnit.NANOSECONDS);
+		if (!slowThreshold.isZero() && !slowThreshold.isNegative() && nanos >= slowThreshold.toNanos())
+			logger.warn("Slow SQL statement of {} ms{}: {}", TimeUnit.NANOSECONDS.toMillis(nanos), 
+					batchSize > 1 ? " in a batch of " + batchSize : "", statement);
+		RequestStatements request = current.get();
+		if (request != null)
+			request.executed(statement);
+	}
+	
+	private Timer timer(String statement) {
+		return Timer.builder("tasks.sql")
+				.description("Execution time of a SQL statement without reading its rows")
+				.tag("statement", statement)
+				.register(meterRegistry);
+	}
+	
+	// The statement with its literals replaced by ? and every IN list of parameters written as one, an escaped
+	// quote splits a string literal in two so it becomes ??
+	public static String normalize(String sql) {
+		String statement = STRING_LITERAL.matcher(sql).replaceAll("?");
+		statement = NUMBER_LITERAL.matcher(statement).replaceAll("?");
+		statement = IN_LIST.matcher(statement).replaceAll(IN_LIST_FOLDED);
+		return WHITESPACE.matcher(statement).replaceAll(" ").trim();
+	}
+	
+	RequestStatements begin() {
+		return new RequestStatements();
+	}
+	
+	void bind(RequestStatements request) {
+		current.set(request);
+	}
+	
+	void unbind() {
+		current.remove();
+	}
+	
+	// Counts the statements of the task for the request submitting it, whichever thread runs it
+	public Runnable decorate(Runnable task) {
+		RequestStatements request = current.get();
+		if (request == null)
+			return task;
+		return () -> {
+			RequestStatements previous = current.get();
+			current.set(request);
+			try {
+				task.run();
+			} finally {
+				if (previous == null)
+					current.remove();
+				else
+					current.set(previous);
+			}
+		};
+	}
+	
+	void completed(RequestStatements request, String method, String uri) {
+		int count = request.count.get();
+		DistributionSummary.builder("tasks.http.statements")
+				.description("SQL statements issued by a request")
+				.baseUnit("statements")
+				.tag("method", method)
+				.tag("uri", uri)
+				.register(meterRegistry)
+				.record(count);
+		String repeatedStatement = null;
+		int repeats = 0;
+		for (Map.Entry<String, AtomicInteger> select : request.selects.entrySet()) {
+			if (select.getValue().get() > repeats) {
+				repeatedStatement = select.getKey();
+				repeats = select.getValue().get();
+			}
+		}
+		if (count <= requestMaxStatements && repeats <= requestMaxRepeats)
+			return;
+		Counter.builder("tasks.http.statements.flagged")
+				.description("Requests issuing more SQL statements than expected")
+				.tag("method", method)
+				.tag("uri", uri)
+				.register(meterRegistry)
+				.increment();
+		if (repeats > requestMaxRepeats)
+			logger.warn("{} {} issued {} SQL statements and ran this one {} times, likely once per row: {}", method, uri, 
+					count, repeats, repeatedStatement);
+		else
+			logger.warn("{} {} issued {} SQL statements, more than {}", method, uri, count, requestMaxStatements);
+		synchronized (flaggedRequests) {
+			flaggedRequests.addFirst(new FlaggedRequest(Instant.now().toString(), method, uri, count, repeatedStatement, repeats));
+			if (flaggedRequests.size() > FLAGGED_REQUESTS)
+				flaggedRequests.removeLast();
+		}
+	}
+	
+	// the latest first
+	public List<FlaggedRequest> getFlaggedRequests() {
+		synchronized (flaggedRequests) {
+			return new ArrayList<FlaggedRequest>(flaggedRequests);
+		}
+	}
+	
+}
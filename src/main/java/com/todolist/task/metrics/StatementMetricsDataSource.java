@@ -0,0 +1,106 @@
+package com.todolist.task.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+// Data source whose connections report the execution time of every statement to the metrics once they
+// are set, a batch is reported as one execution. The statements run before, creating the schema, are not
+public class StatementMetricsDataSource extends DelegatingDataSource {
+	
+	private volatile SqlStatementMetrics metrics;
+	
+	public StatementMetricsDataSource(DataSource targetDataSource) {
+		super(targetDataSource);
+	}
+	
+	public void setMetrics(SqlStatementMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	@Override
+	public Connection getConnection() throws SQLException {
+		return timed(super.getConnection());
+	}
+	
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return timed(super.getConnection(username, password));
+	}
+	
+	private Connection timed(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					Object result = invoke(connection, method, args);
+					if (!(result instanceof Statement) || !method.getReturnType().isInterface())
+						return result;
+					String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+					return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { method.getReturnType() },
+							new TimedStatement((Statement) result, sql));
+				});
+	}
+	
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+	
+	// A prepared statement keeps its SQL, a plain one gets it with every execution
+	private class TimedStatement implements InvocationHandler {
+	
+		private final Statement statement;
+		private final String sql;
+		private String batchSql;
+		private int batchSize;
+	
+		private TimedStatement(Statement statement, String sql) {
+			this.statement = statement;
+			this.sql = sql;
+		}
+	
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			SqlStatementMetrics statementMetrics = metrics;
+			if (name.equals("addBatch")) {
+				batchSize++;
+				if (batchSql == null && args != null && args.length > 0)
+					batchSql = (String) args[0];
+			} else if (name.equals("clearBatch")) {
+				batchSize = 0;
+				batchSql = null;
+			}
+			if (statementMetrics == null || !name.startsWith("execute"))
+				return StatementMetricsDataSource.invoke(statement, method, args);
+			String executedSql;
+			int executedBatchSize = 1;
+			if (name.equals("executeBatch") || name.equals("executeLargeBatch")) {
+				executedSql = sql != null ? sql : batchSql;
+				executedBatchSize = batchSize;
+				batchSize = 0;
+				batchSql = null;
+			} else {
+				executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+			}
+			long start = System.nanoTime();
+			try {
+				return StatementMetricsDataSource.invoke(statement, method, args);
+			} finally {
+				statementMetrics.executed(executedSql, System.nanoTime() - start, executedBatchSize);
+			}
+		}
+	
+	}
+	
+}
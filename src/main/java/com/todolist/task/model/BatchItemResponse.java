@@ -0,0 +1,46 @@
+package com.todolist.task.model;
+
+public class BatchItemResponse {
+
+	private int index;
+	private Integer id;
+	private String status;
+	private String message;
+	
+	public BatchItemResponse() {
+		
+	}
+	
+	public BatchItemResponse(int index, Integer id, String status, String message) {
+		this.index = index;
+		this.id = id;
+		this.status = status;
+		this.message = message;
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	public void setIndex(int index) {
+		this.index = index;
+	}
+	public Integer getId() {
+		return id;
+	}
+	public void setId(Integer id) {
+		this.id = id;
+	}
+	public String getStatus() {
+		return status;
+	}
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	public String getMessage() {
+		return message;
+	}
+	public void setMessage(String message) {
+		this.message = message;
+	}
+	
+}
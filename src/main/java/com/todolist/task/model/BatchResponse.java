@@ -0,0 +1,45 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+public class BatchResponse {
+
+	private int created;
+	private int failed;
+	private List<BatchItemResponse> items;
+	
+	public BatchResponse() {
+		
+	}
+	
+	public BatchResponse(int created, int failed, List<BatchItemResponse> items) {
+		this.created = created;
+		this.failed = failed;
+		this.items = items;
+	}
+
+	public int getCreated() {
+		return created;
+	}
+
+	public void setCreated(int created) {
+		this.created = created;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public List<BatchItemResponse> getItems() {
+		return items;
+	}
+
+	public void setItems(List<BatchItemResponse> items) {
+		this.items = items;
+	}
+	
+}
@@ -0,0 +1,30 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+import javax.validation.constraints.NotEmpty;
+
+import com.todolist.task.constant.TaskConstant;
+
+public class BulkDeleteRequest {
+
+	@NotEmpty(message = TaskConstant.Required.ids)
+	private List<Integer> ids;
+	
+	public BulkDeleteRequest() {
+		
+	}
+	
+	public BulkDeleteRequest(List<Integer> ids) {
+		this.ids = ids;
+	}
+
+	public List<Integer> getIds() {
+		return ids;
+	}
+
+	public void setIds(List<Integer> ids) {
+		this.ids = ids;
+	}
+	
+}
@@ -0,0 +1,45 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+public class BulkDeleteResponse {
+
+	private long deleted;
+	private int chunks;
+	private List<Integer> notFound;
+	
+	public BulkDeleteResponse() {
+		
+	}
+	
+	public BulkDeleteResponse(long deleted, int chunks, List<Integer> notFound) {
+		this.deleted = deleted;
+		this.chunks = chunks;
+		this.notFound = notFound;
+	}
+
+	public long getDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(long deleted) {
+		this.deleted = deleted;
+	}
+
+	public int getChunks() {
+		return chunks;
+	}
+
+	public void setChunks(int chunks) {
+		this.chunks = chunks;
+	}
+
+	public List<Integer> getNotFound() {
+		return notFound;
+	}
+
+	public void setNotFound(List<Integer> notFound) {
+		this.notFound = notFound;
+	}
+	
+}
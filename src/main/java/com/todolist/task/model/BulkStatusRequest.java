@@ -0,0 +1,44 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.validator.ValidTaskStatus;
+
+public class BulkStatusRequest {
+
+	@NotEmpty(message = TaskConstant.Required.ids)
+	private List<Integer> ids;
+	@NotNull(message = TaskConstant.Required.status)
+	@ValidTaskStatus
+	private String status;
+	
+	public BulkStatusRequest() {
+		
+	}
+	
+	public BulkStatusRequest(List<Integer> ids, String status) {
+		this.ids = ids;
+		this.status = status;
+	}
+
+	public List<Integer> getIds() {
+		return ids;
+	}
+
+	public void setIds(List<Integer> ids) {
+		this.ids = ids;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+	
+}
@@ -0,0 +1,35 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+public class BulkStatusResponse {
+
+	private int updated;
+	private List<Integer> notFound;
+	
+	public BulkStatusResponse() {
+		
+	}
+	
+	public BulkStatusResponse(int updated, List<Integer> notFound) {
+		this.updated = updated;
+		this.notFound = notFound;
+	}
+
+	public int getUpdated() {
+		return updated;
+	}
+
+	public void setUpdated(int updated) {
+		this.updated = updated;
+	}
+
+	public List<Integer> getNotFound() {
+		return notFound;
+	}
+
+	public void setNotFound(List<Integer> notFound) {
+		this.notFound = notFound;
+	}
+	
+}
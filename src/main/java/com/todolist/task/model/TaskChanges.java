@@ -0,0 +1,73 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+import com.todolist.task.entities.Task;
+
+public class TaskChanges {
+	
+	private List<Task> items;
+	private List<Integer> deleted;
+	private long version;
+	private boolean more;
+	private boolean reset;
+	
+	public TaskChanges() {
+	
+	}
+	
+	public TaskChanges(List<Task> items, List<Integer> deleted, long version, boolean more) {
+		this(items, deleted, version, more, false);
+	}
+	
+	public TaskChanges(List<Task> items, List<Integer> deleted, long version, boolean more, boolean reset) {
+		this.items = items;
+		this.deleted = deleted;
+		this.version = version;
+		this.more = more;
+		this.reset = reset;
+	}
+	
+	public List<Task> getItems() {
+		return items;
+	}
+	
+	public void setItems(List<Task> items) {
+		this.items = items;
+	}
+	
+	public List<Integer> getDeleted() {
+		return deleted;
+	}
+	
+	public void setDeleted(List<Integer> deleted) {
+		this.deleted = deleted;
+	}
+	
+	// the since of the next request
+	public long getVersion() {
+		return version;
+	}
+	
+	public void setVersion(long version) {
+		this.version = version;
+	}
+	
+	public boolean isMore() {
+		return more;
+	}
+	
+	public void setMore(boolean more) {
+		this.more = more;
+	}
+	
+	// the deletes since the version asked for may be pruned, the client reloads the tasks and goes on from version
+	public boolean isReset() {
+		return reset;
+	}
+	
+	public void setReset(boolean reset) {
+		this.reset = reset;
+	}
+	
+}
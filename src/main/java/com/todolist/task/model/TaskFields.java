@@ -0,0 +1,57 @@
+package com.todolist.task.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.todolist.task.entities.Task;
+
+// The attributes of a task a client asked for, written as the properties of the task. The version
+// is kept for the entity tag even when it is not one of them
+public class TaskFields {
+	
+	private final long version;
+	private final Map<String, Object> fields;
+	
+	public TaskFields(long version, Map<String, Object> fields) {
+		this.version = version;
+		this.fields = fields;
+	}
+	
+	public static TaskFields of(Task task, List<String> fields) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>(fields.size() * 2);
+		for (String field : fields)
+			values.put(field, valueOf(task, field));
+		return new TaskFields(task.getVersion(), values);
+	}
+	
+	public static Object valueOf(Task task, String field) {
+		switch (field) {
+		case "id":
+			return task.getId();
+		case "subject":
+			return task.getSubject();
+		case "description":
+			return task.getDescription();
+		case "status":
+			return task.getStatus();
+		case "version":
+			return task.getVersion();
+		default:
+			throw new IllegalArgumentException("Unknown task field: " + field);
+		}
+	}
+	
+	@JsonIgnore
+	public long getVersion() {
+		return version;
+	}
+	
+	@JsonAnyGetter
+	public Map<String, Object> getFields() {
+		return fields;
+	}
+	
+}
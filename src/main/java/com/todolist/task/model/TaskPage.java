@@ -0,0 +1,37 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+import com.todolist.task.entities.Task;
+
+public class TaskPage {
+
+	private List<Task> items;
+	private String nextCursor;
+	
+	public TaskPage() {
+		
+	}
+	
+	public TaskPage(List<Task> items, String nextCursor) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<Task> getItems() {
+		return items;
+	}
+
+	public void setItems(List<Task> items) {
+		this.items = items;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+	
+}
@@ -0,0 +1,37 @@
+package com.todolist.task.model;
+
+import java.util.List;
+
+import com.todolist.task.entities.Task;
+
+public class TaskSearchResult {
+	
+	private List<Task> items;
+	private int total;
+	
+	public TaskSearchResult() {
+	
+	}
+	
+	public TaskSearchResult(List<Task> items, int total) {
+		this.items = items;
+		this.total = total;
+	}
+	
+	public List<Task> getItems() {
+		return items;
+	}
+	
+	public void setItems(List<Task> items) {
+		this.items = items;
+	}
+	
+	public int getTotal() {
+		return total;
+	}
+	
+	public void setTotal(int total) {
+		this.total = total;
+	}
+	
+}
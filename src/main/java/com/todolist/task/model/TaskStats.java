@@ -0,0 +1,43 @@
+package com.todolist.task.model;
+
+public class TaskStats {
+
+	private long total;
+	private long pending;
+	private long done;
+	
+	public TaskStats() {
+		
+	}
+	
+	public TaskStats(long total, long pending, long done) {
+		this.total = total;
+		this.pending = pending;
+		this.done = done;
+	}
+
+	public long getTotal() {
+		return total;
+	}
+
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	public long getPending() {
+		return pending;
+	}
+
+	public void setPending(long pending) {
+		this.pending = pending;
+	}
+
+	public long getDone() {
+		return done;
+	}
+
+	public void setDone(long done) {
+		this.done = done;
+	}
+	
+}
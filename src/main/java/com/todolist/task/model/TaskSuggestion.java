@@ -0,0 +1,33 @@
+package com.todolist.task.model;
+
+public class TaskSuggestion {
+	
+	private int id;
+	private String subject;
+	
+	public TaskSuggestion() {
+	
+	}
+	
+	public TaskSuggestion(int id, String subject) {
+		this.id = id;
+		this.subject = subject;
+	}
+	
+	public int getId() {
+		return id;
+	}
+	
+	public void setId(int id) {
+		this.id = id;
+	}
+	
+	public String getSubject() {
+		return subject;
+	}
+	
+	public void setSubject(String subject) {
+		this.subject = subject;
+	}
+	
+}
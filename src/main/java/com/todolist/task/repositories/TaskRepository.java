@@ -1,24 +1,138 @@
 package com.todolist.task.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 import javax.transaction.Transactional;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
 
 @Transactional
-public interface TaskRepository extends CrudRepository<Task, Integer> {
+public interface TaskRepository extends CrudRepository<Task, Integer>, TaskRepositoryCustom {
 
-	@Query("SELECT t from Task t where lower(t.subject) = lower(?1)")
-	Task findTaskBySubject(String subject);
+	// Seek by primary key so every page costs the same regardless of how deep the client is
+	List<Task> findByIdGreaterThanOrderByIdAsc(int id, Pageable pageable);
+	
+	// Both read a single range of the (status, id) index
+	List<Task> findByStatusOrderByIdAsc(String status);
+	
+	List<Task> findByStatusAndIdGreaterThanOrderByIdAsc(String status, int id, Pageable pageable);
+	
+	// Forward-only cursor for bulk export, the caller must consume it inside a transaction and close it
+	@QueryHints(value = {
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+			@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")
+	})
+	@Query("SELECT t from Task t order by t.id")
+	Stream<Task> streamAllTasks();
+	
+	<S extends Task> S saveAndFlush(S task);
+	
+	void flush();
+	
+	@Query("SELECT t.subjectKey from Task t where t.subjectKey in (?1)")
+	List<String> findExistingSubjectKeys(Collection<String> subjectKeys);
+	
+	@Query("SELECT t.version from Task t where t.id = ?1")
+	Long findVersionById(int id);
+	
+	// Locks the rows until commit so the statuses read stay the ones replaced by the following update
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT t.id, t.status from Task t where t.id in (?1)")
+	List<Object[]> findStatusesForUpdate(Collection<Integer> ids);
+	
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@Query("SELECT t.id from Task t where t.status=?1 and t.id>?2 order by t.id")
+	List<Integer> findIdsByStatusForUpdate(String status, int afterId, Pageable pageable);
+	
+	@Query("SELECT t.status, count(t) from Task t group by t.status")
+	List<Object[]> countByStatus();
+	
+	// Both read a range of their change_version index, upTo keeps out the versions of writes not committed yet
+	@Query("SELECT t from Task t where t.changeVersion>?1 and t.changeVersion<=?2 order by t.changeVersion, t.id")
+	List<Task> findChangedTasks(long since, long upTo, Pageable pageable);
+	
+	@Query("SELECT t from TaskTombstone t where t.changeVersion>?1 and t.changeVersion<=?2 order by t.changeVersion, t.id")
+	List<TaskTombstone> findTombstones(long since, long upTo, Pageable pageable);
+	
+	@Query("SELECT coalesce(max(t.changeVersion), 0) from Task t")
+	long findLastChangeVersion();
+	
+	@Query("SELECT coalesce(max(t.changeVersion), 0) from TaskTombstone t")
+	long findLastTombstoneChangeVersion();
+	
+	@Query("SELECT coalesce(max(h.changeVersion), 0) from TaskTombstoneHorizon h")
+	long findTombstoneHorizon();
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.status=?1, t.version=t.version+1, t.changeVersion=?3 where t.id=(?2)")
+	int updateTaskStatusById(String status, int id, long changeVersion);
 	
-	@Query("SELECT t from Task t where lower(t.subject) = lower(?1) and t.id != (?2)")
-	Task findDuplicateTaskBySubjectAndId(String subject, int id);
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.status=?1, t.version=t.version+1, t.changeVersion=?4 where t.id=(?2) and t.version=?3")
+	int updateTaskStatusByIdAndVersion(String status, int id, long version, long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.status=?1, t.version=t.version+1, t.changeVersion=?3 where t.id in (?2)")
+	int updateTaskStatusByIdIn(String status, Collection<Integer> ids, long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("DELETE from Task t where t.id in (?1)")
+	int deleteTasksByIdIn(Collection<Integer> ids);
+	
+	// Copies the ids of the tasks about to be deleted, must run before the DELETE in the same transaction
+	@Modifying
+	@Query("INSERT into TaskTombstone (id, changeVersion) SELECT t.id, ?2 from Task t where t.id in (?1)")
+	int insertTombstones(Collection<Integer> ids, long changeVersion);
+	
+	@Modifying
+	@Query("DELETE from TaskTombstone t where t.changeVersion<=?1")
+	int deleteTombstonesUpTo(long changeVersion);
+	
+	// Variants that only match a task keeping its status or only one whose status flips, a task has 
+	// two statuses so an affected row tells the caller which status it had before
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.subject=?2, t.subjectKey=?3, t.description=?4, t.version=t.version+1, "
+			+ "t.changeVersion=?6 where t.id=?1 and t.status=?5")
+	int updateTaskByIdAndStatus(int id, String subject, String subjectKey, String description, String status, 
+			long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.subject=?2, t.subjectKey=?3, t.description=?4, t.version=t.version+1, "
+			+ "t.changeVersion=?7 where t.id=?1 and t.version=?6 and t.status=?5")
+	int updateTaskByIdAndVersionAndStatus(int id, String subject, String subjectKey, String description, String status, 
+			long version, long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.subject=?2, t.subjectKey=?3, t.description=?4, t.status=?5, t.version=t.version+1, "
+			+ "t.changeVersion=?6 where t.id=?1 and t.status<>?5")
+	int updateTaskByIdAndStatusNot(int id, String subject, String subjectKey, String description, String status, 
+			long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.subject=?2, t.subjectKey=?3, t.description=?4, t.status=?5, t.version=t.version+1, "
+			+ "t.changeVersion=?7 where t.id=?1 and t.version=?6 and t.status<>?5")
+	int updateTaskByIdAndVersionAndStatusNot(int id, String subject, String subjectKey, String description, String status, 
+			long version, long changeVersion);
+	
+	@Modifying(clearAutomatically = true)
+	@Query("UPDATE Task t SET t.status=?1, t.version=t.version+1, t.changeVersion=?3 where t.id=(?2) and t.status<>?1")
+	int updateTaskStatusByIdAndStatusNot(String status, int id, long changeVersion);
 	
 	@Modifying(clearAutomatically = true)
-	@Query("UPDATE Task SET status=lower(?1) where id=(?2)")
-	int updateTaskStatusById(String status, int id);
+	@Query("UPDATE Task t SET t.status=?1, t.version=t.version+1, t.changeVersion=?4 where t.id=(?2) and t.version=?3 "
+			+ "and t.status<>?1")
+	int updateTaskStatusByIdAndVersionAndStatusNot(String status, int id, long version, long changeVersion);
 	
 }
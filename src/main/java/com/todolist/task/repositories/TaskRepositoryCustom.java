@@ -0,0 +1,17 @@
+package com.todolist.task.repositories;
+
+import java.util.List;
+
+// Projections of the task attributes a client names, only those columns are selected.
+// A row holds the values of the attributes in the order they are given
+public interface TaskRepositoryCustom {
+	
+	List<Object[]> findAllFields(List<String> fields);
+	
+	// null when there is no task of the id
+	Object[] findFieldsById(int id, List<String> fields);
+	
+	// written before the tombstones up to it are pruned, JPQL has no statement inserting or updating the row
+	void saveTombstoneHorizon(long changeVersion);
+	
+}
@@ -0,0 +1,68 @@
+package com.todolist.task.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.transaction.Transactional;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstoneHorizon;
+
+// Builds the select list from the attribute names, the caller checks them against TaskConstant.Fields
+public class TaskRepositoryImpl implements TaskRepositoryCustom {
+	
+	@PersistenceContext
+	EntityManager entityManager;
+	
+	@Override
+	public List<Object[]> findAllFields(List<String> fields) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+		Root<Task> task = select(query, fields);
+		query.orderBy(builder.asc(task.get("id")));
+		return rowsOf(entityManager.createQuery(query).getResultList());
+	}
+	
+	// the id is bound, a literal would make every id another statement
+	@Override
+	public Object[] findFieldsById(int id, List<String> fields) {
+		CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+		Root<Task> task = select(query, fields);
+		ParameterExpression<Integer> idParameter = builder.parameter(Integer.class);
+		query.where(builder.equal(task.get("id"), idParameter));
+		List<Object[]> rows = rowsOf(entityManager.createQuery(query).setParameter(idParameter, id).getResultList());
+		return rows.isEmpty() ? null : rows.get(0);
+	}
+	
+	@Override
+	@Transactional
+	public void saveTombstoneHorizon(long changeVersion) {
+		entityManager.merge(new TaskTombstoneHorizon(changeVersion));
+	}
+	
+	private Root<Task> select(CriteriaQuery<Object[]> query, List<String> fields) {
+		Root<Task> task = query.from(Task.class);
+		List<Selection<?>> selections = new ArrayList<Selection<?>>(fields.size());
+		for (String field : fields)
+			selections.add(task.get(field));
+		query.multiselect(selections);
+		return task;
+	}
+	
+	// Hibernate returns the value itself for a multiselect of a single attribute, whatever the query type
+	private static List<Object[]> rowsOf(List<?> results) {
+		List<Object[]> rows = new ArrayList<Object[]>(results.size());
+		for (Object result : results)
+			rows.add(result instanceof Object[] ? (Object[]) result : new Object[] { result });
+		return rows;
+	}
+	
+}
@@ -0,0 +1,58 @@
+package com.todolist.task.search;
+
+import java.util.Arrays;
+
+// Task ids of one term in ascending order with the weight of the term in each task. New tasks get higher ids
+// so they are appended, only rewriting an older task moves the entries after it
+class Postings {
+	
+	private int[] ids = new int[4];
+	private float[] weights = new float[4];
+	private int size;
+	
+	int size() {
+		return size;
+	}
+	
+	int idAt(int index) {
+		return ids[index];
+	}
+	
+	float weightAt(int index) {
+		return weights[index];
+	}
+	
+	// The weight of the term in the task, 0 when the task does not hold it
+	float weight(int id) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		return index < 0 ? 0 : weights[index];
+	}
+	
+	void put(int id, float weight) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if (index >= 0) {
+			weights[index] = weight;
+			return;
+		}
+		index = -index - 1;
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2);
+			weights = Arrays.copyOf(weights, size * 2);
+		}
+		System.arraycopy(ids, index, ids, index + 1, size - index);
+		System.arraycopy(weights, index, weights, index + 1, size - index);
+		ids[index] = id;
+		weights[index] = weight;
+		size++;
+	}
+	
+	void remove(int id) {
+		int index = Arrays.binarySearch(ids, 0, size, id);
+		if (index < 0)
+			return;
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+		size--;
+	}
+	
+}
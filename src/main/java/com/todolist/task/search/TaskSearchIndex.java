@@ -0,0 +1,261 @@
+package com.todolist.task.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.repositories.TaskRepository;
+
+// Inverted index of the words of task subjects and descriptions, built once at startup and then kept up to date
+// from committed writes. A search matches tasks holding every query term, a term ending with * matches
+// every word starting with it, and ranks them by BM25 with the words of the subject weighing more
+@Component
+public class TaskSearchIndex {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskSearchIndex.class);
+	private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+\\*?");
+	private static final float SUBJECT_WEIGHT = 3f;
+	private static final float SATURATION = 1.2f;
+	private static final int BUILD_CHUNK_SIZE = 1000;
+	
+	public static class Hits {
+	
+		private final List<Integer> ids;
+		private final int total;
+	
+		public Hits(List<Integer> ids, int total) {
+			this.ids = ids;
+			this.total = total;
+		}
+	
+		// the best matching ids first
+		public List<Integer> getIds() {
+			return ids;
+		}
+	
+		public int getTotal() {
+			return total;
+		}
+	
+	}
+	
+	private final TreeMap<String, Postings> postingsByTerm = new TreeMap<String, Postings>();
+	private final Map<Integer, String[]> termsByTask = new HashMap<Integer, String[]>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// ids deleted while the index is built, the build must not add them back
+	private Set<Integer> deletedDuringBuild;
+	
+	@Autowired
+	TaskRepository taskRepository;
+	
+	// Reads the tasks page by page in id order, a task already indexed from a write event is newer than the page
+	@EventListener(ApplicationReadyEvent.class)
+	public void build() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			deletedDuringBuild = new HashSet<Integer>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		int afterId = 0;
+		List<Task> tasks;
+		do {
+			tasks = taskRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, BUILD_CHUNK_SIZE));
+			lock.writeLock().lock();
+			try {
+				for (Task task : tasks) {
+					if (!termsByTask.containsKey(task.getId()) && !deletedDuringBuild.contains(task.getId()))
+						index(task);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+			if (!tasks.isEmpty())
+				afterId = tasks.get(tasks.size() - 1).getId();
+		} while (tasks.size() == BUILD_CHUNK_SIZE);
+		lock.writeLock().lock();
+		try {
+			deletedDuringBuild = null;
+			logger.info("Task search index built in {} ms: {} tasks, {} terms", (System.nanoTime() - start) / 1000000,
+					termsByTask.size(), postingsByTerm.size());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	// A status change leaves the words as they are
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskEvent(TaskEvent event) {
+		if (event.getType() == TaskEvent.Type.STATUS_CHANGED)
+			return;
+		lock.writeLock().lock();
+		try {
+			if (event.getType() == TaskEvent.Type.DELETED) {
+				unindex(event.getId());
+				if (deletedDuringBuild != null)
+					deletedDuringBuild.add(event.getId());
+			} else {
+				index(event.getTask());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	public Hits search(String query, int limit) {
+		List<String> queryTerms = tokenize(query, true);
+		if (queryTerms.size() > TaskConstant.Search.maxTerms)
+			queryTerms = queryTerms.subList(0, TaskConstant.Search.maxTerms);
+		if (queryTerms.isEmpty())
+			return new Hits(Collections.<Integer>emptyList(), 0);
+		lock.readLock().lock();
+		try {
+			List<List<Postings>> matches = new ArrayList<List<Postings>>(queryTerms.size());
+			for (String term : queryTerms) {
+				List<Postings> postings = postingsOf(term);
+				if (postings.isEmpty())
+					return new Hits(Collections.<Integer>emptyList(), 0);
+				matches.add(postings);
+			}
+			// the term matching the fewest tasks gives the candidates, the other terms only filter and score them
+			matches.sort(Comparator.comparingLong(TaskSearchIndex::sizeOf));
+			Map<Integer, Float> scores = new HashMap<Integer, Float>();
+			for (Postings postings : matches.get(0)) {
+				float idf = idf(postings);
+				for (int i = 0; i < postings.size(); i++)
+					scores.merge(postings.idAt(i), score(postings.weightAt(i), idf), Math::max);
+			}
+			for (List<Postings> postingsOfTerm : matches.subList(1, matches.size())) {
+				Iterator<Map.Entry<Integer, Float>> candidates = scores.entrySet().iterator();
+				while (candidates.hasNext()) {
+					Map.Entry<Integer, Float> candidate = candidates.next();
+					float best = 0;
+					for (Postings postings : postingsOfTerm) {
+						float weight = postings.weight(candidate.getKey());
+						if (weight > 0)
+							best = Math.max(best, score(weight, idf(postings)));
+					}
+					if (best == 0)
+						candidates.remove();
+					else
+						candidate.setValue(candidate.getValue() + best);
+				}
+			}
+			return new Hits(top(scores, limit), scores.size());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	// Keeps the best scores in a heap of the limit, ties go to the oldest task
+	private List<Integer> top(Map<Integer, Float> scores, int limit) {
+		Comparator<Map.Entry<Integer, Float>> worstFirst = Comparator.<Map.Entry<Integer, Float>, Float>comparing(Map.Entry::getValue)
+				.thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+		PriorityQueue<Map.Entry<Integer, Float>> best = new PriorityQueue<Map.Entry<Integer, Float>>(limit + 1, worstFirst);
+		for (Map.Entry<Integer, Float> score : scores.entrySet()) {
+			best.add(score);
+			if (best.size() > limit)
+				best.poll();
+		}
+		List<Integer> ids = new ArrayList<Integer>(best.size());
+		while (!best.isEmpty())
+			ids.add(best.poll().getKey());
+		Collections.reverse(ids);
+		return ids;
+	}
+	
+	private List<Postings> postingsOf(String term) {
+		if (!term.endsWith("*")) {
+			Postings postings = postingsByTerm.get(term);
+			return postings == null ? Collections.<Postings>emptyList() : Collections.singletonList(postings);
+		}
+		String prefix = term.substring(0, term.length() - 1);
+		List<Postings> postings = new ArrayList<Postings>();
+		for (Postings prefixed : postingsByTerm.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+			postings.add(prefixed);
+			if (postings.size() == TaskConstant.Search.maxPrefixTerms)
+				break;
+		}
+		return postings;
+	}
+	
+	private static long sizeOf(List<Postings> postings) {
+		long size = 0;
+		for (Postings prefixed : postings)
+			size += prefixed.size();
+		return size;
+	}
+	
+	private float idf(Postings postings) {
+		float taskCount = termsByTask.size();
+		return (float) Math.log(1 + (taskCount - postings.size() + 0.5f) / (postings.size() + 0.5f));
+	}
+	
+	private static float score(float weight, float idf) {
+		return idf * weight * (SATURATION + 1) / (weight + SATURATION);
+	}
+	
+	private void index(Task task) {
+		unindex(task.getId());
+		Map<String, Float> weights = new HashMap<String, Float>();
+		for (String term : tokenize(task.getSubject(), false))
+			weights.merge(term, SUBJECT_WEIGHT, Float::sum);
+		for (String term : tokenize(task.getDescription(), false))
+			weights.merge(term, 1f, Float::sum);
+		for (Map.Entry<String, Float> weight : weights.entrySet())
+			postingsByTerm.computeIfAbsent(weight.getKey(), term -> new Postings()).put(task.getId(), weight.getValue());
+		termsByTask.put(task.getId(), weights.keySet().toArray(new String[weights.size()]));
+	}
+	
+	private void unindex(int id) {
+		String[] terms = termsByTask.remove(id);
+		if (terms == null)
+			return;
+		for (String term : terms) {
+			Postings postings = postingsByTerm.get(term);
+			postings.remove(id);
+			if (postings.size() == 0)
+				postingsByTerm.remove(term);
+		}
+	}
+	
+	// Lower-cased runs of letters and digits, a query term keeps a trailing * to match as a prefix
+	static List<String> tokenize(String text, boolean query) {
+		List<String> terms = new ArrayList<String>();
+		if (text == null)
+			return terms;
+		Matcher matcher = TOKEN.matcher(text.toLowerCase(Locale.ROOT));
+		while (matcher.find()) {
+			String term = matcher.group();
+			terms.add(query || !term.endsWith("*") ? term : term.substring(0, term.length() - 1));
+		}
+		return terms;
+	}
+	
+}
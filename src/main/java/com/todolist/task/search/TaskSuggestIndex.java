@@ -0,0 +1,182 @@
+package com.todolist.task.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.model.TaskSuggestion;
+import com.todolist.task.repositories.TaskRepository;
+
+// Subject keys of every task in sorted arrays, so the subjects starting with a prefix are the run found by
+// a binary search and a suggestion costs O(log n + limit) whatever the number of tasks. A subject already in
+// lower case is stored once as its own key, and the keys are unique as the subject_key index guarantees
+@Component
+public class TaskSuggestIndex {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskSuggestIndex.class);
+	private static final int BUILD_CHUNK_SIZE = 1000;
+	
+	private String[] keys = new String[16];
+	private String[] subjects = new String[16];
+	private int[] ids = new int[16];
+	private int size;
+	private final Map<Integer, String> keyById = new HashMap<Integer, String>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	// ids deleted while the index is built, the build must not add them back
+	private Set<Integer> deletedDuringBuild;
+	
+	@Autowired
+	TaskRepository taskRepository;
+	
+	// Reads the tasks page by page in id order, a task already indexed from a write event is newer than the page
+	@EventListener(ApplicationReadyEvent.class)
+	public void build() {
+		long start = System.nanoTime();
+		lock.writeLock().lock();
+		try {
+			deletedDuringBuild = new HashSet<Integer>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		int afterId = 0;
+		List<Task> tasks;
+		do {
+			tasks = taskRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, BUILD_CHUNK_SIZE));
+			lock.writeLock().lock();
+			try {
+				for (Task task : tasks) {
+					if (!keyById.containsKey(task.getId()) && !deletedDuringBuild.contains(task.getId()))
+						put(task.getId(), task.getSubject());
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+			if (!tasks.isEmpty())
+				afterId = tasks.get(tasks.size() - 1).getId();
+		} while (tasks.size() == BUILD_CHUNK_SIZE);
+		lock.writeLock().lock();
+		try {
+			deletedDuringBuild = null;
+			logger.info("Task suggest index built in {} ms: {} subjects", (System.nanoTime() - start) / 1000000, size);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	// A status change leaves the subject as it is
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskEvent(TaskEvent event) {
+		if (event.getType() == TaskEvent.Type.STATUS_CHANGED)
+			return;
+		lock.writeLock().lock();
+		try {
+			if (event.getType() == TaskEvent.Type.DELETED) {
+				remove(event.getId());
+				if (deletedDuringBuild != null)
+					deletedDuringBuild.add(event.getId());
+			} else {
+				put(event.getTask().getId(), event.getTask().getSubject());
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	// Subjects starting with the prefix, ignoring case, in the order of their keys
+	public List<TaskSuggestion> suggest(String prefix, int limit) {
+		String key = Task.subjectKeyOf(prefix);
+		lock.readLock().lock();
+		try {
+			List<TaskSuggestion> suggestions = new ArrayList<TaskSuggestion>(Math.min(limit, size));
+			for (int index = indexOf(key); index < size && suggestions.size() < limit && keys[index].startsWith(key); index++)
+				suggestions.add(new TaskSuggestion(ids[index], subjects[index]));
+			return suggestions;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	private void put(int id, String subject) {
+		String key = Task.subjectKeyOf(subject);
+		String previousKey = keyById.get(id);
+		if (key == null) {
+			remove(id);
+			return;
+		}
+		if (previousKey != null) {
+			if (previousKey.equals(key) && subject.equals(subjects[indexOf(key)]))
+				return;
+			remove(id);
+		}
+		int index = indexOf(key);
+		// a key held by another task is only possible until that task's own event arrives, the newest write wins
+		if (index < size && keys[index].equals(key)) {
+			keyById.remove(ids[index]);
+			removeAt(index);
+		}
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			subjects = Arrays.copyOf(subjects, size * 2);
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(subjects, index, subjects, index + 1, size - index);
+		System.arraycopy(ids, index, ids, index + 1, size - index);
+		keys[index] = key;
+		subjects[index] = key.equals(subject) ? key : subject;
+		ids[index] = id;
+		size++;
+		keyById.put(id, key);
+	}
+	
+	private void remove(int id) {
+		String key = keyById.remove(id);
+		if (key == null)
+			return;
+		int index = indexOf(key);
+		if (index < size && ids[index] == id)
+			removeAt(index);
+	}
+	
+	private void removeAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(subjects, index + 1, subjects, index, size - index - 1);
+		System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+		size--;
+		keys[size] = null;
+		subjects[size] = null;
+	}
+	
+	// Index of the key, or of the first greater key when it is absent
+	private int indexOf(String key) {
+		int index = Arrays.binarySearch(keys, 0, size, key);
+		return index < 0 ? -index - 1 : index;
+	}
+	
+}
@@ -1,28 +1,349 @@
 package com.todolist.task.services;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.todolist.task.cache.TaskCache;
+import com.todolist.task.changes.TaskChangeVersions;
+import com.todolist.task.constant.TaskConstant;
 import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.exception.TaskBadRequestException;
+import com.todolist.task.exception.TaskConflictException;
 import com.todolist.task.exception.TaskException;
+import com.todolist.task.model.BatchItemResponse;
+import com.todolist.task.model.BatchResponse;
+import com.todolist.task.model.BulkDeleteResponse;
+import com.todolist.task.model.BulkStatusResponse;
+import com.todolist.task.model.TaskChanges;
+import com.todolist.task.model.TaskFields;
+import com.todolist.task.model.TaskPage;
+import com.todolist.task.model.TaskSearchResult;
+import com.todolist.task.model.TaskSuggestion;
 import com.todolist.task.repositories.TaskRepository;
+import com.todolist.task.search.TaskSearchIndex;
+import com.todolist.task.search.TaskSuggestIndex;
+
+import io.micrometer.core.annotation.Timed;
 
 @Service
 @Transactional(rollbackFor = TaskException.class)
 public class TaskService {
 	
+	private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
+	
 	@Autowired
 	TaskRepository taskRepository;
 	
+	@Autowired
+	ObjectMapper objectMapper;
+	
+	@PersistenceContext
+	EntityManager entityManager;
+	
+	@Autowired
+	Validator validator;
+	
+	@Autowired
+	TaskCache taskCache;
+	
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+	
+	@Autowired
+	PlatformTransactionManager transactionManager;
+	
+	@Autowired
+	TaskSearchIndex taskSearchIndex;
+	
+	@Autowired
+	TaskSuggestIndex taskSuggestIndex;
+	
+	@Autowired
+	TaskChangeVersions taskChangeVersions;
+	
+	@Timed("tasks.service")
 	public List<Task> getAllTasks() {
 		return (List<Task>) taskRepository.findAll();
 	}
 	
+	// Sparse fieldset of the list, only the columns of the fields are selected
+	@Transactional(readOnly = true)
+	public List<TaskFields> getAllTaskFields(String fields) throws TaskException {
+		List<String> fieldNames = fieldsOf(fields);
+		List<String> selection = selectionOf(fieldNames);
+		List<Object[]> rows = taskRepository.findAllFields(selection);
+		List<TaskFields> tasks = new ArrayList<TaskFields>(rows.size());
+		for (Object[] row : rows)
+			tasks.add(taskFieldsOf(fieldNames, selection, row));
+		return tasks;
+	}
+	
+	// A cached task already holds every field, a miss selects only the columns of the fields and is not cached
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public TaskFields getTaskFields(int id, String fields) throws TaskException {
+		List<String> fieldNames = fieldsOf(fields);
+		Task cachedTask = taskCache.get(id);
+		if (cachedTask != null)
+			return TaskFields.of(cachedTask, fieldNames);
+		List<String> selection = selectionOf(fieldNames);
+		Object[] row = taskRepository.findFieldsById(id, selection);
+		if (row == null)
+			throw new TaskException("Not found id: " + id);
+		return taskFieldsOf(fieldNames, selection, row);
+	}
+	
+	// The names of a comma separated fieldset in the order of TaskConstant.Fields
+	private List<String> fieldsOf(String fields) throws TaskException {
+		Set<String> requested = new HashSet<String>();
+		for (String field : fields.split(",")) {
+			String name = field.trim();
+			if (name.isEmpty())
+				continue;
+			if (!TaskConstant.Fields.all.contains(name))
+				throw new TaskBadRequestException("Invalid task field: " + name + ", fields are " + TaskConstant.Fields.all);
+			requested.add(name);
+		}
+		if (requested.isEmpty())
+			throw new TaskBadRequestException(TaskConstant.Required.fields);
+		List<String> fieldNames = new ArrayList<String>(requested.size());
+		for (String name : TaskConstant.Fields.all) {
+			if (requested.contains(name))
+				fieldNames.add(name);
+		}
+		return fieldNames;
+	}
+	
+	// the version is always selected for the entity tag, it is the last column when it is not one of the fields
+	private List<String> selectionOf(List<String> fieldNames) {
+		if (fieldNames.contains("version"))
+			return fieldNames;
+		List<String> selection = new ArrayList<String>(fieldNames.size() + 1);
+		selection.addAll(fieldNames);
+		selection.add("version");
+		return selection;
+	}
+	
+	private TaskFields taskFieldsOf(List<String> fieldNames, List<String> selection, Object[] row) {
+		Map<String, Object> values = new LinkedHashMap<String, Object>(fieldNames.size() * 2);
+		for (int i = 0; i < fieldNames.size(); i++)
+			values.put(fieldNames.get(i), row[i]);
+		return new TaskFields((Long) row[selection.indexOf("version")], values);
+	}
+	
+	public List<Task> getTasksByStatus(String status) throws TaskException {
+		return taskRepository.findByStatusOrderByIdAsc(statusOf(status));
+	}
+	
+	// status is optional, the cursor stays the last id so it works the same with or without it
+	public TaskPage getTaskPage(String after, int limit, String status) throws TaskException {
+		if (limit < 1 || limit > TaskConstant.Paging.maxLimit)
+			throw new TaskBadRequestException("limit must be between 1 and " + TaskConstant.Paging.maxLimit);
+		int afterId = decodeCursor(after);
+		// fetch one extra row to find out whether there is a next page without a count query
+		PageRequest pageRequest = PageRequest.of(0, limit + 1);
+		List<Task> tasks = status == null 
+				? taskRepository.findByIdGreaterThanOrderByIdAsc(afterId, pageRequest)
+				: taskRepository.findByStatusAndIdGreaterThanOrderByIdAsc(statusOf(status), afterId, pageRequest);
+		String nextCursor = null;
+		if (tasks.size() > limit) {
+			tasks = tasks.subList(0, limit);
+			nextCursor = encodeCursor(tasks.get(limit - 1).getId());
+		}
+		return new TaskPage(tasks, nextCursor);
+	}
+	
+	// Ranks the ids in the search index and loads only the tasks of the page with one query,
+	// a task deleted in between is left out
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+	public TaskSearchResult searchTasks(String query, int limit) throws TaskException {
+		if (query == null || query.trim().isEmpty())
+			throw new TaskBadRequestException(TaskConstant.Required.query);
+		if (limit < 1 || limit > TaskConstant.Paging.maxLimit)
+			throw new TaskBadRequestException("limit must be between 1 and " + TaskConstant.Paging.maxLimit);
+		TaskSearchIndex.Hits hits = taskSearchIndex.search(query, limit);
+		Map<Integer, Task> tasksById = new HashMap<Integer, Task>(hits.getIds().size() * 2);
+		for (Task task : taskRepository.findAllById(hits.getIds()))
+			tasksById.put(task.getId(), task);
+		List<Task> tasks = new ArrayList<Task>(hits.getIds().size());
+		for (Integer id : hits.getIds()) {
+			Task task = tasksById.get(id);
+			if (task != null)
+				tasks.add(task);
+		}
+		return new TaskSearchResult(tasks, hits.getTotal());
+	}
+	
+	// Answered from the suggest index alone, a keystroke never reaches the database
+	@Timed("tasks.service")
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public List<TaskSuggestion> suggestTasks(String prefix, int limit) throws TaskException {
+		if (prefix == null || prefix.isEmpty())
+			throw new TaskBadRequestException(TaskConstant.Required.prefix);
+		if (limit < 1 || limit > TaskConstant.Suggest.maxLimit)
+			throw new TaskBadRequestException("limit must be between 1 and " + TaskConstant.Suggest.maxLimit);
+		return taskSuggestIndex.suggest(prefix, limit);
+	}
+	
+	// Merges the written tasks and the tombstones in change version order up to the visible version. A page
+	// never splits the writes of one version, so the version returned covers everything before it.
+	// The deletes after a since below the tombstone horizon may be pruned, the client is told to reload the
+	// tasks and go on from the visible version, a change written meanwhile is only read twice
+	@Transactional(readOnly = true)
+	public TaskChanges getChanges(long since, int limit) throws TaskException {
+		if (since < 0)
+			throw new TaskBadRequestException("since must not be negative");
+		if (limit < 1 || limit > TaskConstant.Paging.maxLimit)
+			throw new TaskBadRequestException("limit must be between 1 and " + TaskConstant.Paging.maxLimit);
+		long upTo = taskChangeVersions.visible();
+		if (since < taskChangeVersions.horizon())
+			return new TaskChanges(new ArrayList<Task>(), new ArrayList<Integer>(), upTo, false, true);
+		if (since >= upTo)
+			return new TaskChanges(new ArrayList<Task>(), new ArrayList<Integer>(), since, false);
+		// one extra row of each tells whether the page is complete
+		PageRequest pageRequest = PageRequest.of(0, limit + 1);
+		List<Task> tasks = taskRepository.findChangedTasks(since, upTo, pageRequest);
+		List<TaskTombstone> tombstones = taskRepository.findTombstones(since, upTo, pageRequest);
+		if (tasks.size() + tombstones.size() <= limit)
+			return changesOf(tasks, tombstones, upTo, false);
+		long nextVersion = changeVersionAt(tasks, tombstones, limit);
+		if (changeVersionAt(tasks, tombstones, 0) < nextVersion)
+			return changesOf(changedBefore(tasks, nextVersion), deletedBefore(tombstones, nextVersion), nextVersion - 1, true);
+		// the writes of the first version alone are over the limit, they are a bulk chunk at most and come whole
+		tasks = taskRepository.findChangedTasks(since, nextVersion, Pageable.unpaged());
+		tombstones = taskRepository.findTombstones(since, nextVersion, Pageable.unpaged());
+		return changesOf(tasks, tombstones, nextVersion, nextVersion < upTo);
+	}
+	
+	// The change version at the index of the tasks and tombstones merged in order
+	private long changeVersionAt(List<Task> tasks, List<TaskTombstone> tombstones, int index) {
+		int taskIndex = 0, tombstoneIndex = 0;
+		long version = 0;
+		for (int i = 0; i <= index; i++) {
+			if (tombstoneIndex == tombstones.size() || (taskIndex < tasks.size() 
+					&& tasks.get(taskIndex).getChangeVersion() <= tombstones.get(tombstoneIndex).getChangeVersion()))
+				version = tasks.get(taskIndex++).getChangeVersion();
+			else
+				version = tombstones.get(tombstoneIndex++).getChangeVersion();
+		}
+		return version;
+	}
+	
+	private List<Task> changedBefore(List<Task> tasks, long version) {
+		int end = 0;
+		while (end < tasks.size() && tasks.get(end).getChangeVersion() < version)
+			end++;
+		return tasks.subList(0, end);
+	}
+	
+	private List<TaskTombstone> deletedBefore(List<TaskTombstone> tombstones, long version) {
+		int end = 0;
+		while (end < tombstones.size() && tombstones.get(end).getChangeVersion() < version)
+			end++;
+		return tombstones.subList(0, end);
+	}
+	
+	private TaskChanges changesOf(List<Task> tasks, List<TaskTombstone> tombstones, long version, boolean more) {
+		List<Integer> deleted = new ArrayList<Integer>(tombstones.size());
+		for (TaskTombstone tombstone : tombstones)
+			deleted.add(tombstone.getId());
+		return new TaskChanges(new ArrayList<Task>(tasks), deleted, version, more);
+	}
+	
+	private String statusOf(String status) throws TaskException {
+		if (!TaskConstant.Status.pending.equalsIgnoreCase(status) && !TaskConstant.Status.done.equalsIgnoreCase(status))
+			throw new TaskBadRequestException("Invalid task status: " + status);
+		return status.toLowerCase(Locale.ROOT);
+	}
+	
+	private String encodeCursor(int id) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(String.valueOf(id).getBytes(StandardCharsets.US_ASCII));
+	}
+	
+	private int decodeCursor(String cursor) throws TaskException {
+		if (cursor == null || cursor.isEmpty())
+			return 0;
+		try {
+			return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+		} catch (IllegalArgumentException e) {
+			throw new TaskBadRequestException("Invalid cursor: " + cursor);
+		}
+	}
+	
+	// Writes every task as one JSON line while reading them through a database cursor,
+	// each task is detached once written so neither the session nor the heap grows with the table
+	@Transactional(readOnly = true)
+	public long exportTasks(OutputStream out) throws IOException {
+		ObjectWriter writer = objectMapper.writerFor(Task.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		long count = 0;
+		try (Stream<Task> tasks = taskRepository.streamAllTasks();
+				JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+			generator.setRootValueSeparator(null);
+			Iterator<Task> iterator = tasks.iterator();
+			while (iterator.hasNext()) {
+				Task task = iterator.next();
+				writer.writeValue(generator, task);
+				generator.writeRaw('\n');
+				entityManager.detach(task);
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	// Hot reads are answered from the cache without a transaction, misses load the row and cache it
+	@Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
 	public Task getTaskById(int id) throws TaskException {
+		Task cachedTask = taskCache.get(id);
+		if (cachedTask != null)
+			return cachedTask;
+		long stamp = taskCache.stamp();
+		Task task = findTaskById(id);
+		taskCache.put(task, stamp);
+		return task;
+	}
+	
+	private Task findTaskById(int id) throws TaskException {
 		Optional<Task> optionalTask = taskRepository.findById(id);
 		if (!optionalTask.isPresent())
 			throw new TaskException("Not found id: " + id);
@@ -30,43 +351,293 @@ public class TaskService {
 			return optionalTask.get();
 	}
 	
-	private Optional<Task> findTaskBySubject(String subject) throws TaskException {
-		Optional<Task> optionalTask = Optional.ofNullable(taskRepository.findTaskBySubject(subject));
-		return optionalTask;
+	// The unique index on subject_key rejects duplicated subjects, so no lookup is needed before writing.
+	// The id and version of the body are ignored, an existing id would otherwise merge over that task
+	@Timed("tasks.service")
+	public Task save(Task task) throws TaskException {
+		Task savedTask;
+		task.setId(0);
+		task.setVersion(0);
+		task.setChangeVersion(taskChangeVersions.next());
+		try {
+			savedTask = taskRepository.saveAndFlush(task);
+		} catch (DataIntegrityViolationException e) {
+			throw duplicateSubjectException(task.getSubject(), e);
+		}
+		eventPublisher.publishEvent(TaskEvent.created(savedTask));
+		return savedTask;
 	}
 	
-	private Optional<Task> findDuplicateTaskBySubjectAndId(String subject, int id) throws TaskException {
-		Optional<Task> optionalTask = Optional.ofNullable(taskRepository.findDuplicateTaskBySubjectAndId(subject, id));
-		return optionalTask;
+	// Validates every item, checks subject duplicates of the whole batch with one query and inserts
+	// the accepted items in one transaction, the JDBC batching and pooled ids keep round trips low
+	public BatchResponse saveAll(List<Task> tasks) throws TaskException {
+		if (tasks == null || tasks.isEmpty())
+			throw new TaskException("Batch must contain at least one task");
+		if (tasks.size() > TaskConstant.Batch.maxSize)
+			throw new TaskException("Batch must not contain more than " + TaskConstant.Batch.maxSize + " tasks");
+		Set<String> subjectKeys = new HashSet<String>();
+		for (Task task : tasks) {
+			if (task != null && task.getSubjectKey() != null)
+				subjectKeys.add(task.getSubjectKey());
+		}
+		Set<String> existingSubjectKeys = new HashSet<String>(taskRepository.findExistingSubjectKeys(subjectKeys));
+		List<BatchItemResponse> items = new ArrayList<BatchItemResponse>(tasks.size());
+		List<Task> acceptedTasks = new ArrayList<Task>(tasks.size());
+		List<BatchItemResponse> acceptedItems = new ArrayList<BatchItemResponse>(tasks.size());
+		for (int index = 0; index < tasks.size(); index++) {
+			Task task = tasks.get(index);
+			String error = validateBatchItem(task, existingSubjectKeys);
+			if (error != null) {
+				items.add(new BatchItemResponse(index, null, TaskConstant.Batch.failed, error));
+				continue;
+			}
+			task.setId(0);
+			task.setVersion(0);
+			existingSubjectKeys.add(task.getSubjectKey());
+			BatchItemResponse item = new BatchItemResponse(index, null, TaskConstant.Batch.created, TaskConstant.Response.success);
+			items.add(item);
+			acceptedTasks.add(task);
+			acceptedItems.add(item);
+		}
+		// one version per task, the tasks of a batch are not a single change
+		long changeVersion = taskChangeVersions.next(Math.max(acceptedTasks.size(), 1));
+		for (Task task : acceptedTasks)
+			task.setChangeVersion(changeVersion++);
+		try {
+			taskRepository.saveAll(acceptedTasks);
+			taskRepository.flush();
+		} catch (DataIntegrityViolationException e) {
+			if (isDuplicateSubject(e))
+				throw new TaskException("Batch contains a task subject that has already existed");
+			throw e;
+		}
+		for (int i = 0; i < acceptedTasks.size(); i++) {
+			acceptedItems.get(i).setId(acceptedTasks.get(i).getId());
+			eventPublisher.publishEvent(TaskEvent.created(acceptedTasks.get(i)));
+		}
+		return new BatchResponse(acceptedTasks.size(), tasks.size() - acceptedTasks.size(), items);
 	}
 	
-	public Task save(Task task) throws TaskException {
-		Optional<Task> optionalTask = findTaskBySubject(task.getSubject());
-		if (optionalTask.isPresent())
-			throw new TaskException("Task subject["+task.getSubject()+"] has already existed"); 
-		return taskRepository.save(task); 
+	private String validateBatchItem(Task task, Set<String> existingSubjectKeys) {
+		if (task == null)
+			return "Task must not be null";
+		Set<ConstraintViolation<Task>> violations = validator.validate(task);
+		if (!violations.isEmpty())
+			return violations.iterator().next().getMessage();
+		if (existingSubjectKeys.contains(task.getSubjectKey()))
+			return "Task subject["+task.getSubject()+"] has already existed";
+		return null;
 	}
 	
-	public Task update(int id, Task task) throws TaskException {
-		getTaskById(id);
-		Optional<Task> optionalTask = findDuplicateTaskBySubjectAndId(task.getSubject(), id);
-		if (optionalTask.isPresent())
-			throw new TaskException("Task subject["+task.getSubject()+"] has already existed");
-		Task updateTask = getTaskById(id);
-		updateTask.setSubject(task.getSubject());
-		updateTask.setDescription(task.getDescription());
-		updateTask.setStatus(task.getStatus());
-		taskRepository.save(updateTask);
-		return updateTask;
+	// One conditional UPDATE, the affected row count tells whether the task was written, 
+	// only a failed write costs one more query to tell not found from a version conflict.
+	// The UPDATE also matches the status, which tells the previous status to the task counters.
+	// It first keeps the status as most edits do, only a write flipping it runs the second UPDATE
+	@Timed("tasks.service")
+	public int update(int id, Task task, Long expectedVersion) throws TaskException {
+		String newStatus = task.getStatus().toLowerCase(Locale.ROOT);
+		String previousStatus = newStatus;
+		long changeVersion = taskChangeVersions.next();
+		int updatedRows;
+		try {
+			if (expectedVersion == null)
+				updatedRows = taskRepository.updateTaskByIdAndStatus(id, task.getSubject(), task.getSubjectKey(), 
+						task.getDescription(), task.getStatus(), changeVersion);
+			else
+				updatedRows = taskRepository.updateTaskByIdAndVersionAndStatus(id, task.getSubject(), 
+						task.getSubjectKey(), task.getDescription(), task.getStatus(), expectedVersion, changeVersion);
+			if (updatedRows == 0) {
+				previousStatus = otherStatus(newStatus);
+				if (expectedVersion == null)
+					updatedRows = taskRepository.updateTaskByIdAndStatusNot(id, task.getSubject(), task.getSubjectKey(), 
+							task.getDescription(), task.getStatus(), changeVersion);
+				else
+					updatedRows = taskRepository.updateTaskByIdAndVersionAndStatusNot(id, task.getSubject(), 
+							task.getSubjectKey(), task.getDescription(), task.getStatus(), expectedVersion, changeVersion);
+			}
+		} catch (DataIntegrityViolationException e) {
+			throw duplicateSubjectException(task.getSubject(), e);
+		}
+		if (updatedRows == 0)
+			throw notFoundOrConflictException(id, expectedVersion);
+		eventPublisher.publishEvent(TaskEvent.updated(updatedTask(id, task, newStatus, expectedVersion, changeVersion), 
+				previousStatus));
+		return updatedRows;
 	}
 	
-	public int updateTaskStatus(String status, int id) throws TaskException {
-		getTaskById(id);
-		return taskRepository.updateTaskStatusById(status, id);
+	// The task as stored by the UPDATE, not the request body: a matched expected version was increased by one,
+	// otherwise the new version is read back from the row this transaction holds locked
+	private Task updatedTask(int id, Task task, String status, Long expectedVersion, long changeVersion) {
+		Task updated = new Task(id, task.getSubject(), task.getDescription(), status);
+		Long version = expectedVersion != null ? Long.valueOf(expectedVersion + 1) : taskRepository.findVersionById(id);
+		// the journal engine holds no row lock, a task deleted right after the write has no version left
+		updated.setVersion(version == null ? 0 : version);
+		updated.setChangeVersion(changeVersion);
+		return updated;
 	}
 	
+	// The opposite order of update: a status PATCH mostly flips the status, only one setting the status
+	// the task already has runs the second UPDATE
+	@Timed("tasks.service")
+	public int updateTaskStatus(String status, int id, Long expectedVersion) throws TaskException {
+		String newStatus = status.toLowerCase(Locale.ROOT);
+		String previousStatus = otherStatus(newStatus);
+		long changeVersion = taskChangeVersions.next();
+		int updatedRows;
+		if (expectedVersion == null)
+			updatedRows = taskRepository.updateTaskStatusByIdAndStatusNot(status, id, changeVersion);
+		else
+			updatedRows = taskRepository.updateTaskStatusByIdAndVersionAndStatusNot(status, id, expectedVersion, changeVersion);
+		if (updatedRows == 0) {
+			previousStatus = newStatus;
+			if (expectedVersion == null)
+				updatedRows = taskRepository.updateTaskStatusById(status, id, changeVersion);
+			else
+				updatedRows = taskRepository.updateTaskStatusByIdAndVersion(status, id, expectedVersion, changeVersion);
+		}
+		if (updatedRows == 0)
+			throw notFoundOrConflictException(id, expectedVersion);
+		eventPublisher.publishEvent(TaskEvent.statusChanged(id, newStatus, previousStatus));
+		return updatedRows;
+	}
+	
+	// Sets the status of many tasks with one UPDATE per chunk of ids in this transaction, the rows of
+	// a chunk are read and locked first to tell the missing ids and the previous statuses
+	@Timed("tasks.service")
+	public BulkStatusResponse updateTasksStatus(String status, List<Integer> ids) throws TaskException {
+		if (ids == null || ids.isEmpty())
+			throw new TaskException(TaskConstant.Required.ids);
+		if (ids.size() > TaskConstant.Batch.maxSize)
+			throw new TaskException("Bulk update must not contain more than " + TaskConstant.Batch.maxSize + " ids");
+		String newStatus = statusOf(status);
+		List<Integer> uniqueIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(ids));
+		List<Integer> notFound = new ArrayList<Integer>();
+		int updatedRows = 0;
+		for (int from = 0; from < uniqueIds.size(); from += TaskConstant.Batch.chunkSize) {
+			List<Integer> chunk = uniqueIds.subList(from, Math.min(from + TaskConstant.Batch.chunkSize, uniqueIds.size()));
+			Map<Integer, String> previousStatuses = new HashMap<Integer, String>(chunk.size() * 2);
+			for (Object[] row : taskRepository.findStatusesForUpdate(chunk))
+				previousStatuses.put((Integer) row[0], (String) row[1]);
+			for (Integer id : chunk) {
+				if (!previousStatuses.containsKey(id))
+					notFound.add(id);
+			}
+			if (previousStatuses.isEmpty())
+				continue;
+			updatedRows += taskRepository.updateTaskStatusByIdIn(newStatus, previousStatuses.keySet(), taskChangeVersions.next());
+			for (Map.Entry<Integer, String> entry : previousStatuses.entrySet())
+				eventPublisher.publishEvent(TaskEvent.statusChanged(entry.getKey(), newStatus, entry.getValue()));
+		}
+		return new BulkStatusResponse(updatedRows, notFound);
+	}
+	
+	private String otherStatus(String status) {
+		return TaskConstant.Status.pending.equals(status) ? TaskConstant.Status.done : TaskConstant.Status.pending;
+	}
+	
+	private TaskException notFoundOrConflictException(int id, Long expectedVersion) {
+		Long version = taskRepository.findVersionById(id);
+		if (version == null)
+			return new TaskException("Not found id: " + id);
+		return new TaskConflictException("Task id["+id+"] has been modified, expected version " + expectedVersion 
+				+ " but it is " + version);
+	}
+	
+	// The path of a bulk delete chunk of one id: the row is locked while its status is read for the task
+	// counters, then the tombstone and the DELETE are written without loading the task
+	@Timed("tasks.service")
 	public void delete(int id) throws TaskException {
-		taskRepository.deleteById(id);
+		List<Object[]> rows = taskRepository.findStatusesForUpdate(Collections.singletonList(id));
+		if (rows.isEmpty())
+			throw new TaskException("Not found id: " + id);
+		deleteChunk(Collections.singletonMap(id, (String) rows.get(0)[1]));
+	}
+	
+	// Deletes the given tasks with one DELETE per chunk of ids, every chunk is committed on its own
+	// so a large cleanup never holds one long transaction nor its locks
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	@Timed("tasks.service")
+	public BulkDeleteResponse deleteTasks(List<Integer> ids) throws TaskException {
+		if (ids == null || ids.isEmpty())
+			throw new TaskException(TaskConstant.Required.ids);
+		if (ids.size() > TaskConstant.Batch.maxSize)
+			throw new TaskException("Bulk delete must not contain more than " + TaskConstant.Batch.maxSize + " ids");
+		List<Integer> uniqueIds = new ArrayList<Integer>(new LinkedHashSet<Integer>(ids));
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		List<Integer> notFound = new ArrayList<Integer>();
+		long deleted = 0;
+		int chunks = 0;
+		for (int from = 0; from < uniqueIds.size(); from += TaskConstant.Batch.chunkSize) {
+			List<Integer> chunk = uniqueIds.subList(from, Math.min(from + TaskConstant.Batch.chunkSize, uniqueIds.size()));
+			deleted += transactionTemplate.execute(transaction -> {
+				Map<Integer, String> statuses = new HashMap<Integer, String>(chunk.size() * 2);
+				for (Object[] row : taskRepository.findStatusesForUpdate(chunk))
+					statuses.put((Integer) row[0], (String) row[1]);
+				for (Integer id : chunk) {
+					if (!statuses.containsKey(id))
+						notFound.add(id);
+				}
+				return deleteChunk(statuses);
+			});
+			chunks++;
+			logger.info("Bulk delete by ids: {} of {} ids processed, {} tasks deleted", 
+					Math.min(from + TaskConstant.Batch.chunkSize, uniqueIds.size()), uniqueIds.size(), deleted);
+		}
+		return new BulkDeleteResponse(deleted, chunks, notFound);
+	}
+	
+	// Deletes every task having the status, chunk by chunk in id order until none is left
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	@Timed("tasks.service")
+	public BulkDeleteResponse deleteTasksByStatus(String status) throws TaskException {
+		String deletedStatus = statusOf(status);
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		PageRequest chunkRequest = PageRequest.of(0, TaskConstant.Batch.chunkSize);
+		long deleted = 0;
+		int chunks = 0;
+		int lastId = 0;
+		while (true) {
+			int afterId = lastId;
+			List<Integer> chunk = transactionTemplate.execute(transaction -> {
+				List<Integer> ids = taskRepository.findIdsByStatusForUpdate(deletedStatus, afterId, chunkRequest);
+				Map<Integer, String> statuses = new HashMap<Integer, String>(ids.size() * 2);
+				for (Integer id : ids)
+					statuses.put(id, deletedStatus);
+				deleteChunk(statuses);
+				return ids;
+			});
+			if (chunk.isEmpty())
+				break;
+			deleted += chunk.size();
+			chunks++;
+			lastId = chunk.get(chunk.size() - 1);
+			logger.info("Bulk delete of {} tasks: {} tasks deleted in {} chunks", deletedStatus, deleted, chunks);
+		}
+		return new BulkDeleteResponse(deleted, chunks, new ArrayList<Integer>());
+	}
+	
+	private int deleteChunk(Map<Integer, String> statuses) {
+		if (statuses.isEmpty())
+			return 0;
+		taskRepository.insertTombstones(statuses.keySet(), taskChangeVersions.next());
+		int deletedRows = taskRepository.deleteTasksByIdIn(statuses.keySet());
+		for (Map.Entry<Integer, String> entry : statuses.entrySet())
+			eventPublisher.publishEvent(TaskEvent.deleted(entry.getKey(), entry.getValue()));
+		return deletedRows;
+	}
+	
+	private TaskException duplicateSubjectException(String subject, DataIntegrityViolationException e) {
+		if (!isDuplicateSubject(e))
+			throw e;
+		return new TaskException("Task subject["+subject+"] has already existed");
+	}
+	
+	private boolean isDuplicateSubject(DataIntegrityViolationException e) {
+		Throwable cause = e.getCause();
+		if (!(cause instanceof ConstraintViolationException))
+			return false;
+		String constraintName = ((ConstraintViolationException) cause).getConstraintName();
+		return constraintName != null && constraintName.toLowerCase(Locale.ROOT).contains(Task.SUBJECT_KEY_CONSTRAINT);
 	}
 	
 }
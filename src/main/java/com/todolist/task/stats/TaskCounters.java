@@ -0,0 +1,115 @@
+package com.todolist.task.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.model.TaskStats;
+import com.todolist.task.repositories.TaskRepository;
+
+// Task counts kept up to date from committed writes, so reading them never touches the database.
+// They are reconciled with the table at startup and then periodically to correct any drift
+@Component
+public class TaskCounters {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskCounters.class);
+	
+	private final LongAdder total = new LongAdder();
+	private final LongAdder pending = new LongAdder();
+	private final LongAdder done = new LongAdder();
+	// writes take the shared side, only a reconciliation overwriting the counters takes the exclusive one
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final AtomicLong writes = new AtomicLong();
+	
+	@Autowired
+	TaskRepository taskRepository;
+	
+	public TaskStats stats() {
+		return new TaskStats(total.sum(), pending.sum(), done.sum());
+	}
+	
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onTaskEvent(TaskEvent event) {
+		lock.readLock().lock();
+		try {
+			if (event.getType() == TaskEvent.Type.CREATED)
+				total.increment();
+			else if (event.getType() == TaskEvent.Type.DELETED)
+				total.decrement();
+			LongAdder previous = counter(event.getPreviousStatus());
+			LongAdder current = counter(event.getStatus());
+			if (previous != current) {
+				if (previous != null)
+					previous.decrement();
+				if (current != null)
+					current.increment();
+			}
+			writes.incrementAndGet();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	private LongAdder counter(String status) {
+		if (TaskConstant.Status.pending.equals(status))
+			return pending;
+		if (TaskConstant.Status.done.equals(status))
+			return done;
+		return null;
+	}
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void reconcileAtStartup() {
+		reconcile();
+	}
+	
+	// Counts the table with one grouped query, the result is thrown away when a write was counted
+	// meanwhile since it may or may not be part of it, the next run then tries again
+	@Scheduled(fixedDelayString = "${task.stats.reconcile-interval:PT5M}", 
+			initialDelayString = "${task.stats.reconcile-interval:PT5M}")
+	public void reconcile() {
+		long writesBefore = writes.get();
+		long totalCount = 0, pendingCount = 0, doneCount = 0;
+		for (Object[] row : taskRepository.countByStatus()) {
+			long count = ((Number) row[1]).longValue();
+			totalCount += count;
+			if (TaskConstant.Status.pending.equals(row[0]))
+				pendingCount = count;
+			else if (TaskConstant.Status.done.equals(row[0]))
+				doneCount = count;
+		}
+		lock.writeLock().lock();
+		try {
+			if (writes.get() != writesBefore) {
+				logger.debug("Task counters are not reconciled, tasks were written while counting");
+				return;
+			}
+			if (total.sum() != totalCount || pending.sum() != pendingCount || done.sum() != doneCount)
+				logger.info("Task counters reconciled from total={}, pending={}, done={} to total={}, pending={}, done={}", 
+						total.sum(), pending.sum(), done.sum(), totalCount, pendingCount, doneCount);
+			reset(total, totalCount);
+			reset(pending, pendingCount);
+			reset(done, doneCount);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private void reset(LongAdder counter, long value) {
+		counter.reset();
+		counter.add(value);
+	}
+	
+}
@@ -0,0 +1,633 @@
+package com.todolist.task.storage;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskStatusConverter;
+import com.todolist.task.entities.TaskTombstone;
+import com.todolist.task.model.TaskFields;
+import com.todolist.task.repositories.TaskRepository;
+
+// TaskRepository kept in memory and made durable by the task store, selected with task.storage.engine=journal.
+// Every write is validated and appended under one lock, then waits for the group commit outside of it.
+// A periodic snapshot lets the store drop the journals it covers so a restart replays only the recent writes.
+// Reads never lock and always return copies. The *ForUpdate queries hold no lock once they return,
+// a write racing a bulk update or delete is still applied whole but the statuses read may be stale.
+// A write is visible to readers once appended, before its group commit. When the append or the sync fails the
+// caller gets a DataAccessResourceFailureException for a write readers may already see and a restart may not
+// recover, so from then on the storage refuses every write and snapshot until a restart replays the journal
+@Component
+@Primary
+@ConditionalOnProperty(name = "task.storage.engine", havingValue = "journal")
+public class JournalTaskRepository implements TaskRepository {
+	
+	private static final Logger logger = LoggerFactory.getLogger(JournalTaskRepository.class);
+	private static final TaskStatusConverter statusConverter = new TaskStatusConverter();
+	private static final Comparator<Task> CHANGE_ORDER = Comparator.comparingLong(Task::getChangeVersion)
+			.thenComparingInt(Task::getId);
+	private static final Comparator<TaskTombstone> TOMBSTONE_ORDER = Comparator.comparingLong(TaskTombstone::getChangeVersion)
+			.thenComparingInt(TaskTombstone::getId);
+	
+	private final TaskStore store;
+	// replaced by a snapshot, a writer syncs the journal it appended to
+	private volatile TaskJournal journal;
+	private final ConcurrentSkipListMap<Integer, Task> tasks = new ConcurrentSkipListMap<Integer, Task>();
+	// secondary indexes, a reader resolving them re-checks the task since they are not updated atomically with it
+	private final Map<String, NavigableSet<Integer>> idsByStatus = new ConcurrentHashMap<String, NavigableSet<Integer>>();
+	private final Map<String, Integer> idsBySubjectKey = new ConcurrentHashMap<String, Integer>();
+	private final NavigableSet<Task> tasksByChange = new ConcurrentSkipListSet<Task>(CHANGE_ORDER);
+	private final NavigableSet<TaskTombstone> tombstones = new ConcurrentSkipListSet<TaskTombstone>(TOMBSTONE_ORDER);
+	private int lastId;
+	// saved in the snapshot with the tombstones left once pruned up to it
+	private volatile long tombstoneHorizon;
+	// the first journal failure, the tasks in memory may hold writes the journal lost
+	private volatile IOException failure;
+	
+	@Autowired
+	public JournalTaskRepository(@Value("${task.storage.directory:data}") String directory,
+			@Value("${task.storage.initial-size:16MB}") DataSize initialSize,
+			@Value("${task.storage.fsync:true}") boolean fsync) throws IOException {
+		this.store = new TaskStore(Paths.get(directory), initialSize.toBytes(), fsync);
+		this.journal = store.recover(new TaskJournal.Replay() {
+			@Override
+			public void put(Task task) {
+				index(task);
+				lastId = Math.max(lastId, task.getId());
+			}
+			@Override
+			public void delete(int id) {
+				unindex(tasks.remove(id));
+			}
+			@Override
+			public void tombstone(int id, long changeVersion) {
+				tombstones.add(new TaskTombstone(id, changeVersion));
+			}
+			@Override
+			public void lastId(int id) {
+				lastId = Math.max(lastId, id);
+			}
+			@Override
+			public void tombstoneHorizon(long changeVersion) {
+				tombstoneHorizon = changeVersion;
+			}
+		});
+		// ids are never reused, a tombstone of a task still there is one whose delete did not reach the journal
+		tombstones.removeIf(tombstone -> tasks.containsKey(tombstone.getId()));
+		logger.info("Task storage ready with {} tasks, appending to {}", tasks.size(), journal.getFile().toAbsolutePath());
+	}
+	
+	@PreDestroy
+	public synchronized void close() throws IOException {
+		journal.close();
+	}
+	
+	// Switches the writes to a new journal and writes every task to the snapshot in the background, the
+	// lock is only held for the switch. Nothing is done when no write was appended since the last snapshot
+	@Scheduled(fixedDelayString = "${task.storage.snapshot-interval:PT10M}", 
+			initialDelayString = "${task.storage.snapshot-interval:PT10M}")
+	public void snapshot() {
+		synchronized (store) {
+			TaskJournal previous;
+			int snapshotLastId;
+			try {
+				synchronized (this) {
+					if (journal.isEmpty() || failure != null)
+						return;
+					previous = journal;
+					journal = store.rotate(previous);
+					snapshotLastId = lastId;
+				}
+				store.snapshot(previous, snapshotLastId, tombstoneHorizon, tasks.values().iterator(), tombstones.iterator());
+			} catch (IOException e) {
+				logger.error("Task snapshot failed, the journals are kept and replayed at the next start", e);
+			}
+		}
+	}
+	
+	@Override
+	public <S extends Task> S save(S task) {
+		saveAll(Collections.singletonList(task));
+		return task;
+	}
+	
+	@Override
+	public <S extends Task> S saveAndFlush(S task) {
+		return save(task);
+	}
+	
+	// Inserts new tasks and replaces existing ones of the same version as one journal record, the given
+	// tasks get their id and version like managed entities
+	@Override
+	public <S extends Task> Iterable<S> saveAll(Iterable<S> entities) {
+		List<S> saved = new ArrayList<S>();
+		entities.forEach(saved::add);
+		if (saved.isEmpty())
+			return saved;
+		List<Task> states = new ArrayList<Task>(saved.size());
+		TaskJournal target;
+		long position;
+		synchronized (this) {
+			checkWritable();
+			Map<String, Integer> batchSubjectKeys = new HashMap<String, Integer>();
+			int nextId = lastId;
+			for (S task : saved) {
+				Task stored = tasks.get(task.getId());
+				if (stored != null && stored.getVersion() != task.getVersion())
+					throw new ObjectOptimisticLockingFailureException(Task.class, task.getId());
+				Task state = copyOf(task);
+				state.setId(stored == null ? ++nextId : stored.getId());
+				state.setVersion(stored == null ? 0 : stored.getVersion() + 1);
+				checkSubjectKey(state, batchSubjectKeys.get(state.getSubjectKey()));
+				batchSubjectKeys.put(state.getSubjectKey(), state.getId());
+				states.add(state);
+			}
+			target = journal;
+			position = append(states);
+			lastId = nextId;
+		}
+		sync(target, position);
+		for (int i = 0; i < saved.size(); i++) {
+			saved.get(i).setId(states.get(i).getId());
+			saved.get(i).setVersion(states.get(i).getVersion());
+		}
+		return saved;
+	}
+	
+	@Override
+	public void flush() {
+		// every write is in the journal once it returns
+	}
+	
+	@Override
+	public Optional<Task> findById(Integer id) {
+		return Optional.ofNullable(tasks.get(id)).map(this::copyOf);
+	}
+	
+	@Override
+	public boolean existsById(Integer id) {
+		return tasks.containsKey(id);
+	}
+	
+	@Override
+	public Iterable<Task> findAll() {
+		return copiesOf(tasks.values().stream());
+	}
+	
+	@Override
+	public Iterable<Task> findAllById(Iterable<Integer> ids) {
+		List<Task> found = new ArrayList<Task>();
+		for (Integer id : ids) {
+			Task task = tasks.get(id);
+			if (task != null)
+				found.add(copyOf(task));
+		}
+		return found;
+	}
+	
+	@Override
+	public long count() {
+		return tasks.size();
+	}
+	
+	@Override
+	public void deleteById(Integer id) {
+		if (remove(Collections.singletonList(id)) == 0)
+			throw new EmptyResultDataAccessException(String.format("No %s entity with id %s exists!", Task.class, id), 1);
+	}
+	
+	@Override
+	public void delete(Task task) {
+		remove(Collections.singletonList(task.getId()));
+	}
+	
+	@Override
+	public void deleteAll(Iterable<? extends Task> entities) {
+		List<Integer> ids = new ArrayList<Integer>();
+		entities.forEach(task -> ids.add(task.getId()));
+		remove(ids);
+	}
+	
+	@Override
+	public void deleteAll() {
+		remove(new ArrayList<Integer>(tasks.keySet()));
+	}
+	
+	@Override
+	public List<Task> findByIdGreaterThanOrderByIdAsc(int id, Pageable pageable) {
+		return copiesOf(page(tasks.tailMap(id, false).values().stream(), pageable));
+	}
+	
+	@Override
+	public List<Task> findByStatusOrderByIdAsc(String status) {
+		return copiesOf(tasksOf(status, 0));
+	}
+	
+	@Override
+	public List<Task> findByStatusAndIdGreaterThanOrderByIdAsc(String status, int id, Pageable pageable) {
+		return copiesOf(page(tasksOf(status, id), pageable));
+	}
+	
+	@Override
+	public Stream<Task> streamAllTasks() {
+		return tasks.values().stream().map(this::copyOf);
+	}
+	
+	@Override
+	public List<String> findExistingSubjectKeys(Collection<String> subjectKeys) {
+		return subjectKeys.stream().filter(idsBySubjectKey::containsKey).collect(Collectors.toList());
+	}
+	
+	@Override
+	public Long findVersionById(int id) {
+		Task task = tasks.get(id);
+		return task == null ? null : task.getVersion();
+	}
+	
+	@Override
+	public List<Object[]> findStatusesForUpdate(Collection<Integer> ids) {
+		List<Object[]> rows = new ArrayList<Object[]>(ids.size());
+		for (Integer id : ids) {
+			Task task = tasks.get(id);
+			if (task != null)
+				rows.add(new Object[] { task.getId(), task.getStatus() });
+		}
+		return rows;
+	}
+	
+	@Override
+	public List<Integer> findIdsByStatusForUpdate(String status, int afterId, Pageable pageable) {
+		return page(tasksOf(status, afterId), pageable).map(Task::getId).collect(Collectors.toList());
+	}
+	
+	@Override
+	public List<Object[]> countByStatus() {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (Map.Entry<String, NavigableSet<Integer>> entry : idsByStatus.entrySet()) {
+			long count = entry.getValue().size();
+			if (count > 0)
+				rows.add(new Object[] { entry.getKey(), count });
+		}
+		return rows;
+	}
+	
+	@Override
+	public List<Task> findChangedTasks(long since, long upTo, Pageable pageable) {
+		return copiesOf(page(tasksByChange.subSet(changeBound(since), false, changeBound(upTo), true).stream(), pageable));
+	}
+	
+	@Override
+	public List<TaskTombstone> findTombstones(long since, long upTo, Pageable pageable) {
+		Stream<TaskTombstone> found = tombstones.subSet(new TaskTombstone(Integer.MAX_VALUE, since), false, 
+				new TaskTombstone(Integer.MAX_VALUE, upTo), true).stream();
+		return page(found, pageable).map(tombstone -> new TaskTombstone(tombstone.getId(), tombstone.getChangeVersion()))
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	@Override
+	public long findLastChangeVersion() {
+		return tasksByChange.isEmpty() ? 0 : tasksByChange.last().getChangeVersion();
+	}
+	
+	@Override
+	public long findLastTombstoneChangeVersion() {
+		return tombstones.isEmpty() ? 0 : tombstones.last().getChangeVersion();
+	}
+	
+	// Stored tasks are replaced on write and never modified, so the values are read without a copy
+	@Override
+	public List<Object[]> findAllFields(List<String> fields) {
+		List<Object[]> rows = new ArrayList<Object[]>(tasks.size());
+		for (Task task : tasks.values())
+			rows.add(fieldsOf(task, fields));
+		return rows;
+	}
+	
+	@Override
+	public Object[] findFieldsById(int id, List<String> fields) {
+		Task task = tasks.get(id);
+		return task == null ? null : fieldsOf(task, fields);
+	}
+	
+	private Object[] fieldsOf(Task task, List<String> fields) {
+		Object[] row = new Object[fields.size()];
+		for (int i = 0; i < row.length; i++)
+			row[i] = TaskFields.valueOf(task, fields.get(i));
+		return row;
+	}
+	
+	@Override
+	public int updateTaskStatusById(String status, int id, long changeVersion) {
+		return update(id, null, status, null, null, null, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskStatusByIdAndVersion(String status, int id, long version, long changeVersion) {
+		return update(id, version, status, null, null, null, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskStatusByIdIn(String status, Collection<Integer> ids, long changeVersion) {
+		String newStatus = canonicalStatus(status);
+		List<Task> states = new ArrayList<Task>(ids.size());
+		TaskJournal target;
+		long position;
+		synchronized (this) {
+			checkWritable();
+			for (Integer id : ids) {
+				Task stored = tasks.get(id);
+				if (stored == null)
+					continue;
+				Task state = copyOf(stored);
+				state.setStatus(newStatus);
+				state.setVersion(stored.getVersion() + 1);
+				state.setChangeVersion(changeVersion);
+				states.add(state);
+			}
+			if (states.isEmpty())
+				return 0;
+			target = journal;
+			position = append(states);
+		}
+		sync(target, position);
+		return states.size();
+	}
+	
+	@Override
+	public int deleteTasksByIdIn(Collection<Integer> ids) {
+		return remove(ids);
+	}
+	
+	// Its own journal record, a crash before the delete record leaves a tombstone the recovery drops again
+	@Override
+	public int insertTombstones(Collection<Integer> ids, long changeVersion) {
+		List<TaskTombstone> inserted = new ArrayList<TaskTombstone>(ids.size());
+		TaskJournal target;
+		long position;
+		synchronized (this) {
+			checkWritable();
+			for (Integer id : ids) {
+				if (tasks.containsKey(id))
+					inserted.add(new TaskTombstone(id, changeVersion));
+			}
+			if (inserted.isEmpty())
+				return 0;
+			target = journal;
+			try {
+				position = journal.appendTombstones(inserted);
+			} catch (IOException e) {
+				throw failed("Could not append to the task journal " + journal.getFile(), e);
+			}
+			tombstones.addAll(inserted);
+		}
+		sync(target, position);
+		return inserted.size();
+	}
+	
+	@Override
+	public long findTombstoneHorizon() {
+		return tombstoneHorizon;
+	}
+	
+	// Like the pruning, it is only durable once the next snapshot holds it
+	@Override
+	public void saveTombstoneHorizon(long changeVersion) {
+		synchronized (store) {
+			tombstoneHorizon = Math.max(tombstoneHorizon, changeVersion);
+		}
+	}
+	
+	// Only in memory, a recovery brings back the tombstones pruned since the last snapshot and the next prune drops them.
+	// Never while a snapshot is written, it could miss tombstones pruned above the horizon it holds
+	@Override
+	public int deleteTombstonesUpTo(long changeVersion) {
+		synchronized (store) {
+			NavigableSet<TaskTombstone> pruned = tombstones.headSet(new TaskTombstone(Integer.MAX_VALUE, changeVersion), true);
+			int count = pruned.size();
+			pruned.clear();
+			return count;
+		}
+	}
+	
+	@Override
+	public int updateTaskByIdAndStatus(int id, String subject, String subjectKey, String description, String status, 
+			long changeVersion) {
+		return update(id, null, status, false, subject, description, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskByIdAndVersionAndStatus(int id, String subject, String subjectKey, String description,
+			String status, long version, long changeVersion) {
+		return update(id, version, status, false, subject, description, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskByIdAndStatusNot(int id, String subject, String subjectKey, String description, String status, 
+			long changeVersion) {
+		return update(id, null, status, true, subject, description, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskByIdAndVersionAndStatusNot(int id, String subject, String subjectKey, String description,
+			String status, long version, long changeVersion) {
+		return update(id, version, status, true, subject, description, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskStatusByIdAndStatusNot(String status, int id, long changeVersion) {
+		return update(id, null, status, true, null, null, changeVersion);
+	}
+	
+	@Override
+	public int updateTaskStatusByIdAndVersionAndStatusNot(String status, int id, long version, long changeVersion) {
+		return update(id, version, status, true, null, null, changeVersion);
+	}
+	
+	// Writes one task like the conditional UPDATE queries, 0 when it is missing, of another version
+	// or, when statusChanges is given, its status does not change or does as required. A null subject only sets the status
+	private int update(int id, Long version, String status, Boolean statusChanges, String subject, String description,
+			long changeVersion) {
+		String newStatus = canonicalStatus(status);
+		TaskJournal target;
+		long position;
+		synchronized (this) {
+			checkWritable();
+			Task stored = tasks.get(id);
+			if (stored == null || (version != null && stored.getVersion() != version)
+					|| (statusChanges != null && statusChanges == newStatus.equals(stored.getStatus())))
+				return 0;
+			Task state = copyOf(stored);
+			if (subject != null) {
+				state.setSubject(subject);
+				state.setDescription(description);
+				checkSubjectKey(state, null);
+			}
+			state.setStatus(newStatus);
+			state.setVersion(stored.getVersion() + 1);
+			state.setChangeVersion(changeVersion);
+			target = journal;
+			position = append(Collections.singletonList(state));
+		}
+		sync(target, position);
+		return 1;
+	}
+	
+	private int remove(Collection<Integer> ids) {
+		Set<Integer> removed = new LinkedHashSet<Integer>(ids.size() * 2);
+		TaskJournal target;
+		long position;
+		synchronized (this) {
+			checkWritable();
+			for (Integer id : ids) {
+				if (tasks.containsKey(id))
+					removed.add(id);
+			}
+			if (removed.isEmpty())
+				return 0;
+			target = journal;
+			try {
+				position = journal.appendDelete(removed);
+			} catch (IOException e) {
+				throw failed("Could not append to the task journal " + journal.getFile(), e);
+			}
+			for (Integer id : removed)
+				unindex(tasks.remove(id));
+		}
+		sync(target, position);
+		return removed.size();
+	}
+	
+	// Must be called holding the lock, the tasks are visible to readers before the group commit makes them durable
+	private long append(List<Task> states) {
+		long position;
+		try {
+			position = journal.appendPut(states);
+		} catch (IOException e) {
+			throw failed("Could not append to the task journal " + journal.getFile(), e);
+		}
+		for (Task state : states)
+			index(state);
+		return position;
+	}
+	
+	private void sync(TaskJournal target, long position) {
+		try {
+			target.sync(position);
+		} catch (IOException e) {
+			throw failed("Could not sync the task journal " + target.getFile(), e);
+		}
+	}
+	
+	// Must be called holding the lock before a write is appended
+	private void checkWritable() {
+		if (failure != null)
+			throw new DataAccessResourceFailureException("Task storage refuses writes since the journal failed, "
+					+ "a restart recovers the tasks it holds", failure);
+	}
+	
+	private DataAccessResourceFailureException failed(String message, IOException e) {
+		if (failure == null) {
+			failure = e;
+			logger.error("Task journal failed, every write is refused until a restart", e);
+		}
+		return new DataAccessResourceFailureException(message, e);
+	}
+	
+	private void index(Task task) {
+		unindex(tasks.put(task.getId(), task));
+		idsByStatus.computeIfAbsent(task.getStatus(), status -> new ConcurrentSkipListSet<Integer>()).add(task.getId());
+		idsBySubjectKey.put(task.getSubjectKey(), task.getId());
+		tasksByChange.add(task);
+	}
+	
+	private void unindex(Task task) {
+		if (task == null)
+			return;
+		NavigableSet<Integer> ids = idsByStatus.get(task.getStatus());
+		if (ids != null)
+			ids.remove(task.getId());
+		idsBySubjectKey.remove(task.getSubjectKey(), task.getId());
+		tasksByChange.remove(task);
+	}
+	
+	// Same failure as the unique index on subject_key so the service reports a duplicated subject
+	private void checkSubjectKey(Task task, Integer batchOwner) {
+		if (task.getSubjectKey() == null)
+			throw new DataIntegrityViolationException("Task subject must not be null");
+		Integer owner = batchOwner != null ? batchOwner : idsBySubjectKey.get(task.getSubjectKey());
+		if (owner != null && owner != task.getId())
+			throw new DataIntegrityViolationException("Duplicated task subject key " + task.getSubjectKey(),
+					new ConstraintViolationException("Duplicated task subject key", null, Task.SUBJECT_KEY_CONSTRAINT));
+	}
+	
+	private Stream<Task> tasksOf(String status, int afterId) {
+		String canonicalStatus = canonicalStatus(status);
+		NavigableSet<Integer> ids = idsByStatus.get(canonicalStatus);
+		if (ids == null)
+			return Stream.empty();
+		return ids.tailSet(afterId, false).stream().map(tasks::get)
+				.filter(task -> task != null && canonicalStatus.equals(task.getStatus()));
+	}
+	
+	// Sorts after every task of the change version
+	private static Task changeBound(long changeVersion) {
+		Task bound = new Task(Integer.MAX_VALUE, null, null, null);
+		bound.setChangeVersion(changeVersion);
+		return bound;
+	}
+	
+	private <T> Stream<T> page(Stream<T> found, Pageable pageable) {
+		return pageable.isPaged() ? found.skip(pageable.getOffset()).limit(pageable.getPageSize()) : found;
+	}
+	
+	private List<Task> copiesOf(Stream<Task> tasks) {
+		return tasks.map(this::copyOf).collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	// Stored tasks are never handed out, a caller modifying a task must not change the repository
+	private Task copyOf(Task task) {
+		Task copy = new Task(task.getId(), task.getSubject(), task.getDescription(), canonicalStatus(task.getStatus()));
+		copy.setVersion(task.getVersion());
+		copy.setChangeVersion(task.getChangeVersion());
+		return copy;
+	}
+	
+	private static String canonicalStatus(String status) {
+		return statusConverter.convertToEntityAttribute(statusConverter.convertToDatabaseColumn(status));
+	}
+	
+}
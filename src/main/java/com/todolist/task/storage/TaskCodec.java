@@ -0,0 +1,72 @@
+package com.todolist.task.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskStatusConverter;
+
+// Binary form of a task shared by the journal and the snapshot:
+// [id][version][change version][status code][subject][description], strings are [length][utf-8 bytes] with -1 for null
+final class TaskCodec {
+	
+	private static final TaskStatusConverter statusConverter = new TaskStatusConverter();
+	
+	private TaskCodec() {
+	
+	}
+	
+	static int sizeOf(Task task) {
+		return 4 + 8 + 8 + 1 + sizeOf(task.getSubject()) + sizeOf(task.getDescription());
+	}
+	
+	static void put(ByteBuffer buffer, Task task) {
+		Integer status = statusConverter.convertToDatabaseColumn(task.getStatus());
+		buffer.putInt(task.getId()).putLong(task.getVersion()).putLong(task.getChangeVersion()).put(status == null ? -1 : status.byteValue());
+		putString(buffer, task.getSubject());
+		putString(buffer, task.getDescription());
+	}
+	
+	static Task get(ByteBuffer buffer) {
+		int id = buffer.getInt();
+		long version = buffer.getLong();
+		long changeVersion = buffer.getLong();
+		byte status = buffer.get();
+		String subject = getString(buffer);
+		String description = getString(buffer);
+		Task task = new Task(id, subject, description, statusConverter.convertToEntityAttribute(status < 0 ? null : (int) status));
+		task.setVersion(version);
+		task.setChangeVersion(changeVersion);
+		return task;
+	}
+	
+	static int crc(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer);
+		return (int) crc.getValue();
+	}
+	
+	private static int sizeOf(String value) {
+		return 4 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+	}
+	
+	private static void putString(ByteBuffer buffer, String value) {
+		if (value == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length).put(bytes);
+	}
+	
+	private static String getString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0)
+			return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+}
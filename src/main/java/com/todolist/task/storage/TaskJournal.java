@@ -0,0 +1,250 @@
+package com.todolist.task.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+
+// Append-only journal of task writes in a memory-mapped file. Every record is
+// [length][crc32][type][payload] and holds all the tasks of one write, so a write is replayed whole or not at all.
+// Appends are sequential, sync makes them durable and lets concurrent writers share one force of the mapping
+public class TaskJournal implements Closeable {
+	
+	public interface Replay {
+		void put(Task task);
+		void delete(int id);
+		void tombstone(int id, long changeVersion);
+		// the highest id ever assigned, the tasks replayed may no longer hold it
+		void lastId(int id);
+		// the change version the tombstones were pruned up to, only a snapshot holds it
+		void tombstoneHorizon(long changeVersion);
+	}
+	
+	private static final int MAGIC = 0x544a4e4c; // TJNL
+	private static final int FORMAT_VERSION = 2;
+	// magic, format version and the end of the journal written by a clean close
+	private static final int HEADER_SIZE = 16;
+	private static final int CLEAN_END = 8;
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final byte DELETE = 2;
+	private static final byte PUT = 3;
+	private static final byte TOMBSTONE = 4;
+	
+	private final Path file;
+	private final long generation;
+	private final FileChannel channel;
+	private final boolean fsync;
+	private MappedByteBuffer buffer;
+	private long writePosition;
+	
+	// group commit, one writer forces the mapping while the others wait for it to cover their records
+	private final Object syncLock = new Object();
+	private boolean syncing;
+	private long durablePosition;
+	
+	public TaskJournal(Path file, long generation, long initialSize, boolean fsync) throws IOException {
+		this.file = file;
+		this.generation = generation;
+		this.fsync = fsync;
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), Math.max(initialSize, HEADER_SIZE)));
+		if (buffer.getInt(0) == 0) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.putLong(CLEAN_END, HEADER_SIZE);
+		} else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a task journal of format version " + FORMAT_VERSION + ": " + file);
+		}
+		this.writePosition = HEADER_SIZE;
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+	public long getGeneration() {
+		return generation;
+	}
+	
+	public synchronized long size() {
+		return writePosition;
+	}
+	
+	public synchronized boolean isEmpty() {
+		return writePosition == HEADER_SIZE;
+	}
+	
+	// Replays every intact record in order and returns how many there were. A torn or corrupted tail, left by a
+	// crash in the middle of an append, ends the replay and is cleared so it can never be mistaken for a record.
+	// After a clean close the replay ends where the close left it and the tail is known to be empty
+	public synchronized long replay(Replay replay) {
+		long records = 0;
+		int position = HEADER_SIZE;
+		while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+			int length = buffer.getInt(position);
+			if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.capacity())
+				break;
+			ByteBuffer payload = slice(position + RECORD_HEADER_SIZE, length);
+			if (TaskCodec.crc(payload.duplicate()) != buffer.getInt(position + 4))
+				break;
+			apply(payload, replay);
+			position += RECORD_HEADER_SIZE + length;
+			records++;
+		}
+		if (position != buffer.getLong(CLEAN_END))
+			clearFrom(position);
+		buffer.putLong(CLEAN_END, 0);
+		buffer.force();
+		writePosition = position;
+		durablePosition = position;
+		return records;
+	}
+	
+	// Appends of the last unsynced commit may have reached the disk in any order, so the whole tail is checked
+	private void clearFrom(int position) {
+		byte[] chunk = new byte[64 * 1024];
+		byte[] zeros = new byte[chunk.length];
+		for (int from = position; from < buffer.capacity(); from += chunk.length) {
+			int length = Math.min(chunk.length, buffer.capacity() - from);
+			slice(from, length).get(chunk, 0, length);
+			for (int i = 0; i < length; i++) {
+				if (chunk[i] != 0) {
+					slice(from, length).put(zeros, 0, length);
+					break;
+				}
+			}
+		}
+	}
+	
+	public long appendPut(Collection<? extends Task> tasks) throws IOException {
+		int size = 1 + 4;
+		for (Task task : tasks)
+			size += TaskCodec.sizeOf(task);
+		ByteBuffer payload = ByteBuffer.allocate(size);
+		payload.put(PUT).putInt(tasks.size());
+		for (Task task : tasks)
+			TaskCodec.put(payload, task);
+		return append(payload);
+	}
+	
+	public long appendTombstones(Collection<TaskTombstone> tombstones) throws IOException {
+		ByteBuffer payload = ByteBuffer.allocate(1 + 4 + (4 + 8) * tombstones.size());
+		payload.put(TOMBSTONE).putInt(tombstones.size());
+		for (TaskTombstone tombstone : tombstones)
+			payload.putInt(tombstone.getId()).putLong(tombstone.getChangeVersion());
+		return append(payload);
+	}
+	
+	public long appendDelete(Collection<Integer> ids) throws IOException {
+		ByteBuffer payload = ByteBuffer.allocate(1 + 4 + 4 * ids.size());
+		payload.put(DELETE).putInt(ids.size());
+		for (Integer id : ids)
+			payload.putInt(id);
+		return append(payload);
+	}
+	
+	// Writes the record after the last one and returns the position a sync must reach to make it durable
+	private synchronized long append(ByteBuffer payload) throws IOException {
+		payload.flip();
+		int length = payload.remaining();
+		int crc = TaskCodec.crc(payload.duplicate());
+		ensureCapacity(writePosition + RECORD_HEADER_SIZE + length);
+		int position = (int) writePosition;
+		ByteBuffer target = slice(position + RECORD_HEADER_SIZE, length);
+		target.put(payload);
+		buffer.putInt(position + 4, crc);
+		buffer.putInt(position, length);
+		writePosition = position + RECORD_HEADER_SIZE + length;
+		return writePosition;
+	}
+	
+	// Doubles the mapping when a record does not fit, the file never shrinks here
+	private void ensureCapacity(long required) throws IOException {
+		if (required <= buffer.capacity())
+			return;
+		long capacity = buffer.capacity();
+		while (capacity < required)
+			capacity *= 2;
+		if (capacity > Integer.MAX_VALUE)
+			throw new IOException("Task journal is full: " + file);
+		buffer.force();
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+	
+	// Returns once everything up to the position is on disk, concurrent writers are covered by a single force
+	public void sync(long position) throws IOException {
+		if (!fsync)
+			return;
+		synchronized (syncLock) {
+			while (durablePosition < position && syncing) {
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for the task journal to sync");
+				}
+			}
+			if (durablePosition >= position)
+				return;
+			syncing = true;
+		}
+		// a failed force leaves the durable position where it was, no later sync may count on it
+		long synced = 0;
+		try {
+			MappedByteBuffer target;
+			long end;
+			synchronized (this) {
+				end = writePosition;
+				target = buffer;
+			}
+			target.force();
+			synced = end;
+		} finally {
+			synchronized (syncLock) {
+				syncing = false;
+				durablePosition = Math.max(durablePosition, synced);
+				syncLock.notifyAll();
+			}
+		}
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen())
+			return;
+		buffer.putLong(CLEAN_END, writePosition);
+		buffer.force();
+		channel.close();
+	}
+	
+	private void apply(ByteBuffer payload, Replay replay) {
+		byte type = payload.get();
+		int count = payload.getInt();
+		for (int i = 0; i < count; i++) {
+			if (type == PUT)
+				replay.put(TaskCodec.get(payload));
+			else if (type == DELETE)
+				replay.delete(payload.getInt());
+			else if (type == TOMBSTONE)
+				replay.tombstone(payload.getInt(), payload.getLong());
+		}
+	}
+	
+	private ByteBuffer slice(int position, int length) {
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(position);
+		slice.limit(position + length);
+		return slice.slice();
+	}
+	
+}
@@ -0,0 +1,152 @@
+package com.todolist.task.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+
+// Every task and tombstone at the end of a journal generation in one file: [magic][format version][generation][last id]
+// [tombstone horizon] [task]* [tombstone id][change version]* [task count][tombstone count][crc32 of everything before it].
+// The tombstone horizon is the change version the tombstones were pruned up to.
+// It is written beside the current snapshot and moved over it, so a crash leaves either one whole
+public class TaskSnapshot {
+	
+	private static final int MAGIC = 0x54534e50; // TSNP
+	private static final int FORMAT_VERSION = 2;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 8;
+	private static final int TRAILER_SIZE = 4 + 4 + 4;
+	private static final int TOMBSTONE_SIZE = 4 + 8;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	
+	private final long generation;
+	private final int lastId;
+	private final long tombstoneHorizon;
+	private final int count;
+	private final int tombstoneCount;
+	private final long size;
+	
+	private TaskSnapshot(long generation, int lastId, long tombstoneHorizon, int count, int tombstoneCount, long size) {
+		this.generation = generation;
+		this.lastId = lastId;
+		this.tombstoneHorizon = tombstoneHorizon;
+		this.count = count;
+		this.tombstoneCount = tombstoneCount;
+		this.size = size;
+	}
+	
+	public long getGeneration() {
+		return generation;
+	}
+	
+	public int getLastId() {
+		return lastId;
+	}
+	
+	public long getTombstoneHorizon() {
+		return tombstoneHorizon;
+	}
+	
+	public int getCount() {
+		return count;
+	}
+	
+	public int getTombstoneCount() {
+		return tombstoneCount;
+	}
+	
+	public long getSize() {
+		return size;
+	}
+	
+	// Streams the tasks through one direct buffer, the file is forced before it replaces the previous snapshot
+	public static TaskSnapshot write(Path file, long generation, int lastId, long tombstoneHorizon, Iterator<Task> tasks, 
+			Iterator<TaskTombstone> tombstones) throws IOException {
+		Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+		CRC32 crc = new CRC32();
+		int count = 0, tombstoneCount = 0;
+		long size;
+		try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation).putInt(lastId).putLong(tombstoneHorizon);
+			while (tasks.hasNext()) {
+				Task task = tasks.next();
+				int taskSize = TaskCodec.sizeOf(task);
+				if (buffer.remaining() < taskSize + TRAILER_SIZE) {
+					flush(channel, buffer, crc);
+					if (buffer.remaining() < taskSize + TRAILER_SIZE)
+						buffer = ByteBuffer.allocateDirect(taskSize + TRAILER_SIZE);
+				}
+				TaskCodec.put(buffer, task);
+				count++;
+			}
+			while (tombstones.hasNext()) {
+				TaskTombstone tombstone = tombstones.next();
+				if (buffer.remaining() < TOMBSTONE_SIZE + TRAILER_SIZE)
+					flush(channel, buffer, crc);
+				buffer.putInt(tombstone.getId()).putLong(tombstone.getChangeVersion());
+				tombstoneCount++;
+			}
+			buffer.putInt(count).putInt(tombstoneCount);
+			flush(channel, buffer, crc);
+			buffer.putInt((int) crc.getValue());
+			flush(channel, buffer, null);
+			channel.force(true);
+			size = channel.size();
+		}
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return new TaskSnapshot(generation, lastId, tombstoneHorizon, count, tombstoneCount, size);
+	}
+	
+	private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		buffer.flip();
+		if (crc != null)
+			crc.update(buffer.duplicate());
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+	
+	// Maps the whole file, checks it and hands every task and tombstone to the replay, null when there is no snapshot yet
+	public static TaskSnapshot read(Path file, TaskJournal.Replay replay) throws IOException {
+		if (!Files.exists(file))
+			return null;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE + 4 + 4 || size > Integer.MAX_VALUE)
+				throw new IOException("Invalid task snapshot size " + size + ": " + file);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int end = (int) size - 4;
+			ByteBuffer content = buffer.duplicate();
+			content.limit(end);
+			if (TaskCodec.crc(content) != buffer.getInt(end))
+				throw new IOException("Corrupted task snapshot: " + file);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION)
+				throw new IOException("Not a task snapshot of format version " + FORMAT_VERSION + ": " + file);
+			long generation = buffer.getLong(8);
+			int lastId = buffer.getInt(16);
+			long tombstoneHorizon = buffer.getLong(20);
+			int recordsEnd = end - 8;
+			int count = buffer.getInt(recordsEnd);
+			int tombstoneCount = buffer.getInt(end - 4);
+			ByteBuffer records = buffer.duplicate();
+			records.position(HEADER_SIZE);
+			records.limit(recordsEnd);
+			for (int i = 0; i < count; i++)
+				replay.put(TaskCodec.get(records));
+			for (int i = 0; i < tombstoneCount; i++)
+				replay.tombstone(records.getInt(), records.getLong());
+			return new TaskSnapshot(generation, lastId, tombstoneHorizon, count, tombstoneCount, size);
+		}
+	}
+	
+}
@@ -0,0 +1,128 @@
+package com.todolist.task.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+
+// Directory of the task storage: one snapshot and the journal generations written after it.
+// A snapshot covers every generation up to its own, those journals are deleted once it is written,
+// so recovery loads the snapshot and only replays the journals of the following generations
+public class TaskStore {
+	
+	private static final Logger logger = LoggerFactory.getLogger(TaskStore.class);
+	private static final Pattern JOURNAL_FILE = Pattern.compile("tasks-(\\d+)\\.journal");
+	
+	private final Path directory;
+	private final long journalSize;
+	private final boolean fsync;
+	
+	public TaskStore(Path directory, long journalSize, boolean fsync) {
+		this.directory = directory;
+		this.journalSize = journalSize;
+		this.fsync = fsync;
+	}
+	
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	// Loads the snapshot, replays the later journals in order and returns the last one opened for appending
+	public TaskJournal recover(TaskJournal.Replay replay) throws IOException {
+		Files.createDirectories(directory);
+		long start = System.nanoTime();
+		TaskSnapshot snapshot = TaskSnapshot.read(snapshotFile(), replay);
+		long snapshotGeneration = snapshot == null ? 0 : snapshot.getGeneration();
+		if (snapshot != null) {
+			replay.lastId(snapshot.getLastId());
+			replay.tombstoneHorizon(snapshot.getTombstoneHorizon());
+		}
+		long snapshotEnd = System.nanoTime();
+		TreeMap<Long, Path> journals = journals();
+		deleteJournals(journals, snapshotGeneration);
+		long records = 0, bytes = 0;
+		TaskJournal journal = null;
+		for (Long generation : journals.tailMap(snapshotGeneration, false).keySet()) {
+			if (journal != null)
+				journal.close();
+			journal = open(generation);
+			records += journal.replay(replay);
+			bytes += journal.size();
+		}
+		if (journal == null)
+			journal = open(snapshotGeneration + 1);
+		long end = System.nanoTime();
+		logger.info("Task store {} recovered in {} ms: snapshot of generation {} with {} tasks, {} tombstones, {} bytes loaded "
+				+ "in {} ms, {} journal records, {} bytes replayed in {} ms", directory.toAbsolutePath(), (end - start) / 1000000,
+				snapshotGeneration, snapshot == null ? 0 : snapshot.getCount(), snapshot == null ? 0 : snapshot.getTombstoneCount(),
+				snapshot == null ? 0 : snapshot.getSize(),
+				(snapshotEnd - start) / 1000000, records, bytes, (end - snapshotEnd) / 1000000);
+		return journal;
+	}
+	
+	// Opens the journal of the next generation, the given one receives no more appends
+	public TaskJournal rotate(TaskJournal journal) throws IOException {
+		return open(journal.getGeneration() + 1);
+	}
+	
+	// Writes the snapshot covering the generation of the journal once everything in it is durable,
+	// then deletes that journal and the older ones. The tasks may already hold writes of the following
+	// generations, replaying those journals over the snapshot yields the same tasks again
+	public TaskSnapshot snapshot(TaskJournal journal, int lastId, long tombstoneHorizon, Iterator<Task> tasks, 
+			Iterator<TaskTombstone> tombstones) throws IOException {
+		long start = System.nanoTime();
+		journal.sync(journal.size());
+		journal.close();
+		TaskSnapshot snapshot = TaskSnapshot.write(snapshotFile(), journal.getGeneration(), lastId, tombstoneHorizon, 
+				tasks, tombstones);
+		int deleted = deleteJournals(journals(), journal.getGeneration());
+		logger.info("Task snapshot of generation {} written in {} ms: {} tasks, {} tombstones, {} bytes, {} journals deleted",
+				snapshot.getGeneration(), (System.nanoTime() - start) / 1000000, snapshot.getCount(), snapshot.getTombstoneCount(),
+				snapshot.getSize(), deleted);
+		return snapshot;
+	}
+	
+	private TaskJournal open(long generation) throws IOException {
+		return new TaskJournal(journalFile(generation), generation, journalSize, fsync);
+	}
+	
+	private Path snapshotFile() {
+		return directory.resolve("tasks.snapshot");
+	}
+	
+	private Path journalFile(long generation) {
+		return directory.resolve(String.format("tasks-%010d.journal", generation));
+	}
+	
+	private TreeMap<Long, Path> journals() throws IOException {
+		TreeMap<Long, Path> journals = new TreeMap<Long, Path>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "tasks-*.journal")) {
+			for (Path file : files) {
+				Matcher matcher = JOURNAL_FILE.matcher(file.getFileName().toString());
+				if (matcher.matches())
+					journals.put(Long.parseLong(matcher.group(1)), file);
+			}
+		}
+		return journals;
+	}
+	
+	private int deleteJournals(TreeMap<Long, Path> journals, long upToGeneration) throws IOException {
+		int deleted = 0;
+		for (Path file : journals.headMap(upToGeneration, true).values()) {
+			Files.delete(file);
+			deleted++;
+		}
+		return deleted;
+	}
+	
+}
@@ -0,0 +1,80 @@
+package com.todolist.task.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveLimitTest {
+	
+	private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private final AdaptiveLimit adaptiveLimit = new AdaptiveLimit(4, 2, 5, 100, TimeUnit.MILLISECONDS, 0.5);
+	
+	@Test
+	public void tryAcquire_RejectedAtLimit() {
+		// execute as many calls as the limit
+		List<AdaptiveLimit.Permit> permits = new ArrayList<AdaptiveLimit.Permit>();
+		for (int i = 0; i < 4; i++)
+			permits.add(adaptiveLimit.tryAcquire());
+		// check the next call is rejected until one completes
+		assertNull(adaptiveLimit.tryAcquire());
+		assertEquals(4, adaptiveLimit.getInFlight());
+		permits.get(0).release(false);
+		assertNotNull(adaptiveLimit.tryAcquire());
+	}
+	
+	@Test
+	public void release_GrowsWithinTarget() {
+		// execute round trips of fast calls using the whole limit
+		long start = System.nanoTime();
+		for (int round = 0; round < 10; round++) {
+			int limit = adaptiveLimit.getLimit();
+			for (int i = 0; i < limit; i++)
+				adaptiveLimit.tryAcquire();
+			for (int i = 0; i < limit; i++)
+				adaptiveLimit.release(start, start + TARGET / 2, false);
+			// check the limit grew by less than one per round trip
+			if (round == 0)
+				assertEquals(4, adaptiveLimit.getLimit());
+		}
+		// check the limit grew up to the max and never beyond it
+		assertEquals(5, adaptiveLimit.getLimit());
+		assertEquals(0, adaptiveLimit.getInFlight());
+	}
+	
+	@Test
+	public void release_IdleLimitDoesNotGrow() {
+		// execute fast calls one at a time
+		long start = System.nanoTime();
+		for (int i = 0; i < 20; i++) {
+			adaptiveLimit.tryAcquire();
+			adaptiveLimit.release(start, start + TARGET / 2, false);
+		}
+		// check the limit is unchanged
+		assertEquals(4, adaptiveLimit.getLimit());
+	}
+	
+	@Test
+	public void release_BacksOffOncePerRoundTrip() {
+		// execute calls admitted together that all complete over the target
+		long start = System.nanoTime();
+		for (int i = 0; i < 4; i++)
+			adaptiveLimit.tryAcquire();
+		for (int i = 0; i < 4; i++)
+			adaptiveLimit.release(start, start + TARGET * 2, false);
+		// check only the first cuts the limit
+		assertEquals(2, adaptiveLimit.getLimit());
+		// check a call admitted after the cut cuts it again, never below the min
+		adaptiveLimit.tryAcquire();
+		adaptiveLimit.release(start + TARGET * 3, start + TARGET * 3, true);
+		assertEquals(2, adaptiveLimit.getLimit());
+		assertEquals(0, adaptiveLimit.getInFlight());
+	}
+	
+}
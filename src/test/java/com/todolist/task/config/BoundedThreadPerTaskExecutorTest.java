@@ -0,0 +1,77 @@
+package com.todolist.task.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+public class BoundedThreadPerTaskExecutorTest {
+	
+	private final BoundedThreadPerTaskExecutor executor = new BoundedThreadPerTaskExecutor(Executors.defaultThreadFactory(), 2, 1);
+	
+	private final CountDownLatch blocked = new CountDownLatch(1);
+	
+	@After
+	public void release() {
+		blocked.countDown();
+	}
+	
+	@Test
+	public void execute_RunsAtMostMaxThreads() throws Exception {
+		// execute as many tasks as the threads and the queue, all blocked
+		CountDownLatch started = new CountDownLatch(2);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 3; i++)
+			futures.add(executor.submit(() -> {
+				started.countDown();
+				blocked.await();
+				return null;
+			}));
+		// check two run and one waits
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertEquals(2, executor.getActiveCount());
+		assertEquals(1, executor.getQueueSize());
+		// check the waiting task runs once the others complete
+		blocked.countDown();
+		for (Future<?> future : futures)
+			future.get(5, TimeUnit.SECONDS);
+		// the slots are released right after the futures complete
+		while (executor.getActiveCount() > 0)
+			Thread.sleep(1);
+		assertEquals(0, executor.getActiveCount());
+		assertEquals(0, executor.getQueueSize());
+	}
+	
+	@Test
+	public void execute_RejectedOverQueue() throws Exception {
+		// execute as many tasks as the threads and the queue, all blocked
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 3; i++)
+			futures.add(executor.submit(() -> {
+				blocked.await();
+				return null;
+			}));
+		// check the next task is rejected until one completes
+		try {
+			executor.execute(() -> { });
+			throw new AssertionError("Expected TaskRejectedException");
+		} catch (TaskRejectedException e) {
+		}
+		blocked.countDown();
+		for (Future<?> future : futures)
+			future.get(5, TimeUnit.SECONDS);
+		while (executor.getActiveCount() > 0)
+			Thread.sleep(1);
+		executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+	}
+	
+}
@@ -1,11 +1,14 @@
 package com.todolist.task.controllers;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
 import java.io.IOException;
 
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import com.fasterxml.jackson.core.JsonParseException;
@@ -24,6 +27,14 @@ public abstract class AbstractControllerTest<Cont, Ex> {
 				.build();
 	}
 	
+	// Performs the request and, when the handler answered asynchronously, the dispatch that writes its result
+	protected MvcResult perform(RequestBuilder requestBuilder) throws Exception {
+		MvcResult mvcResult = mvc.perform(requestBuilder).andReturn();
+		if (mvcResult.getRequest().isAsyncStarted())
+			mvcResult = mvc.perform(asyncDispatch(mvcResult)).andReturn();
+		return mvcResult;
+	}
+	
 	protected String convertMapToJson(Object mapObj) throws JsonProcessingException {
 		ObjectMapper objectMapper = new ObjectMapper();
 		return objectMapper.writeValueAsString(mapObj);
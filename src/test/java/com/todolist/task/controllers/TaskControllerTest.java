@@ -4,41 +4,104 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentMatchers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.todolist.task.admission.AdaptiveLimit;
+import com.todolist.task.admission.TaskAdmission;
+import com.todolist.task.cache.TaskJsonCache;
+import com.todolist.task.cache.TaskListVersion;
 import com.todolist.task.constant.TaskConstant;
 import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.exception.TaskBadRequestException;
+import com.todolist.task.exception.TaskConflictException;
 import com.todolist.task.exception.TaskException;
+import com.todolist.task.model.BatchItemResponse;
+import com.todolist.task.model.BatchResponse;
+import com.todolist.task.model.BulkDeleteRequest;
+import com.todolist.task.model.BulkDeleteResponse;
+import com.todolist.task.model.BulkStatusRequest;
+import com.todolist.task.model.BulkStatusResponse;
 import com.todolist.task.model.ErrorResponse;
 import com.todolist.task.model.SuccessResponse;
+import com.todolist.task.model.TaskChanges;
+import com.todolist.task.model.TaskFields;
+import com.todolist.task.model.TaskPage;
+import com.todolist.task.model.TaskSearchResult;
+import com.todolist.task.model.TaskSuggestion;
 import com.todolist.task.model.TaskStatus;
+import com.todolist.task.model.TaskStats;
+import com.todolist.task.events.TaskEventStream;
 import com.todolist.task.services.TaskService;
+import com.todolist.task.stats.TaskCounters;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 public class TaskControllerTest extends AbstractControllerTest<TaskController, ExceptionController> {
 
 	@Mock
 	private TaskService taskService;
 	
+	@Spy
+	private TaskListVersion taskListVersion;
+	
+	@Spy
+	private TaskJsonCache taskJsonCache = new TaskJsonCache(DataSize.ofMegabytes(1), new ObjectMapper(), new SimpleMeterRegistry());
+	
+	@Mock
+	private TaskCounters taskCounters;
+	
+	@Mock
+	private TaskEventStream taskEventStream;
+	
+	@Spy
+	private TaskExecutor taskRequestExecutor = new SyncTaskExecutor();
+	
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	
+	@Spy
+	private TaskAdmission taskAdmission = new TaskAdmission(2, 200, Duration.ofSeconds(10), 2, 100, Duration.ofSeconds(10), 
+			1, 8, Duration.ofSeconds(10), 1, 0.9, meterRegistry);
+	
 	@InjectMocks
 	private TaskController taskController;
 	
@@ -52,8 +115,8 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 	@Test
 	public void testAPI_NotFound() throws Exception {
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(get("/task_temp")
-				.accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+		MvcResult mvcResult = super.perform(get("/task_temp")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
 		// check status is 404 (NOT_FOUND)
 		assertEquals(HttpStatus.NOT_FOUND.value(), mvcResult.getResponse().getStatus());
 	}
@@ -68,8 +131,8 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// mock task service
 		when(taskService.getAllTasks()).thenReturn(mockTasks);
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(get("/tasks")
-				.accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+		MvcResult mvcResult = super.perform(get("/tasks")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
 		// check status is ok
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
@@ -86,6 +149,343 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		verify(taskService, times(1)).getAllTasks();
 	}
 	
+	@Test
+	public void getAllTaskList_NotModified() throws Exception {
+		// execute task controller with the tag of the current list version
+		MvcResult mvcResult = super.perform(get("/tasks")
+				.header(HttpHeaders.IF_NONE_MATCH, taskListVersion.eTag())
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is not modified
+		assertEquals(HttpStatus.NOT_MODIFIED.value(), mvcResult.getResponse().getStatus());
+		// verify the list is never loaded
+		verify(taskService, never()).getAllTasks();
+		// check the tag is changed once a write is committed
+		String eTag = taskListVersion.eTag();
+		taskListVersion.onTaskEvent(TaskEvent.deleted(1, TaskConstant.Status.pending));
+		mvcResult = super.perform(get("/tasks")
+				.header(HttpHeaders.IF_NONE_MATCH, eTag)
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		assertEquals(taskListVersion.eTag(), mvcResult.getResponse().getHeader(HttpHeaders.ETAG));
+		verify(taskService, times(1)).getAllTasks();
+		// check the Smile encoding of the same version is not validated by the JSON tag
+		mvcResult = super.perform(get("/tasks")
+				.header(HttpHeaders.IF_NONE_MATCH, taskListVersion.eTag())
+				.accept(TaskConstant.ContentType.smile));
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		assertEquals(taskListVersion.eTag(taskListVersion.get(), "smile"), mvcResult.getResponse().getHeader(HttpHeaders.ETAG));
+	}
+	
+	@Test
+	public void getAllTaskList_EncodedOnce() throws Exception {
+		// mock task service
+		when(taskService.getAllTasks()).thenReturn(Arrays.asList(this.mockSingleTask));
+		// execute task controller twice without a write in between
+		String first = super.perform(get("/tasks").accept(MediaType.APPLICATION_JSON_VALUE)).getResponse().getContentAsString();
+		String second = super.perform(get("/tasks").accept(MediaType.APPLICATION_JSON_VALUE)).getResponse().getContentAsString();
+		// check the second response is the cached encoding of the first
+		assertEquals(first, second);
+		assertEquals("Sweep the floor", super.convertJsonToMap(second, Task[].class)[0].getSubject());
+		verify(taskService, times(1)).getAllTasks();
+		// check a committed write makes the list load again and reuse the encoding of the unchanged task
+		taskListVersion.onTaskEvent(TaskEvent.deleted(2, TaskConstant.Status.pending));
+		super.perform(get("/tasks").accept(MediaType.APPLICATION_JSON_VALUE));
+		verify(taskService, times(2)).getAllTasks();
+		verify(taskJsonCache, times(2)).get(this.mockSingleTask);
+	}
+	
+	@Test
+	public void getAllTaskList_Fields() throws Exception {
+		// Initial mock up task fields
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		fields.put("id", 1);
+		fields.put("subject", "Sweep the floor");
+		// mock task service
+		when(taskService.getAllTaskFields("id,subject")).thenReturn(Arrays.asList(new TaskFields(0, fields)));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks?fields=id,subject")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok and only the fields are written
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		assertEquals("[{\"id\":1,\"subject\":\"Sweep the floor\"}]", mvcResult.getResponse().getContentAsString());
+		// verify the whole tasks are neither loaded nor encoded
+		verify(taskService, never()).getAllTasks();
+		verify(taskJsonCache, never()).list(ArgumentMatchers.anyLong(), any());
+	}
+	
+	@Test
+	public void getAllTaskList_Fields_invalid() throws Exception {
+		// mock task service
+		when(taskService.getAllTaskFields("id,owner")).thenThrow(new TaskBadRequestException("Invalid task field: owner"));
+		// execute task controller with an unknown field
+		MvcResult mvcResult = super.perform(get("/tasks?fields=id,owner")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals("Invalid task field: owner", errorResponse.getMessage());
+	}
+	
+	@Test
+	public void getTaskPage() throws Exception {
+		// Initial mock up task
+		TaskPage mockPage = new TaskPage(Arrays.asList(this.mockSingleTask), "Mg");
+		// mock task service
+		when(taskService.getTaskPage("MQ", 1, null)).thenReturn(mockPage);
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks?after=MQ&limit=1")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		TaskPage page = super.convertMVCResultToMap(mvcResult, TaskPage.class);
+		// check items and next cursor as same as mock data
+		assertEquals(1, page.getItems().size());
+		assertEquals("Mg", page.getNextCursor());
+		// verify getTaskPage is executed only 1 time and getAllTasks never be executed
+		verify(taskService, times(1)).getTaskPage("MQ", 1, null);
+		verify(taskService, never()).getAllTasks();
+	}
+	
+	@Test
+	public void getTaskPage_invalid() throws Exception {
+		// mock task service
+		when(taskService.getTaskPage("bogus", 1, null)).thenThrow(new TaskBadRequestException("Invalid cursor: bogus"));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks?after=bogus&limit=1")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals("Invalid cursor: bogus", errorResponse.getMessage());
+	}
+	
+	@Test
+	public void getTasksByStatus() throws Exception {
+		// Initial mock up task
+		String pendingStatus = TaskConstant.Status.pending;
+		// mock task service
+		when(taskService.getTasksByStatus(pendingStatus)).thenReturn(Arrays.asList(this.mockSingleTask));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks?status=pending")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok and only tasks of the status are returned
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		Task[] tasks = super.convertMVCResultToMap(mvcResult, Task[].class);
+		assertEquals(1, tasks.length);
+		// verify getTasksByStatus is executed only 1 time and getAllTasks never be executed
+		verify(taskService, times(1)).getTasksByStatus(pendingStatus);
+		verify(taskService, never()).getAllTasks();
+	}
+	
+	@Test
+	public void getTasksByStatus_invalid() throws Exception {
+		// mock task service
+		when(taskService.getTasksByStatus("bogus")).thenThrow(new TaskBadRequestException("Invalid task status: bogus"));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks?status=bogus")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals("Invalid task status: bogus", errorResponse.getMessage());
+	}
+	
+	@Test
+	public void getTasksByStatus_fields_invalid() throws Exception {
+		// execute task controller with fields on the status and the paged lists
+		MvcResult byStatus = super.perform(get("/tasks?status=pending&fields=id")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		MvcResult page = super.perform(get("/tasks?limit=1&fields=id")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check both are bad requests
+		assertEquals(HttpStatus.BAD_REQUEST.value(), byStatus.getResponse().getStatus());
+		assertEquals(HttpStatus.BAD_REQUEST.value(), page.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(byStatus, ErrorResponse.class);
+		assertEquals("fields is only supported on GET /tasks and GET /tasks/{id}, not with status or limit", 
+				errorResponse.getMessage());
+		// verify no list is loaded
+		verify(taskService, never()).getTasksByStatus(any());
+		verify(taskService, never()).getTaskPage(any(), anyInt(), any());
+		verify(taskService, never()).getAllTaskFields(any());
+	}
+	
+	@Test
+	public void searchTasks() throws Exception {
+		// mock task service
+		when(taskService.searchTasks("sweep", 20)).thenReturn(new TaskSearchResult(Arrays.asList(this.mockSingleTask), 1));
+		// execute task controller without a limit
+		MvcResult mvcResult = super.perform(get("/tasks/search?q=sweep")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok and the matches are returned
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		TaskSearchResult result = super.convertMVCResultToMap(mvcResult, TaskSearchResult.class);
+		assertEquals(1, result.getTotal());
+		assertEquals("Sweep the floor", result.getItems().get(0).getSubject());
+		// verify searchTasks is executed only 1 time with the default limit and getTaskById never be executed
+		verify(taskService, times(1)).searchTasks("sweep", 20);
+		verify(taskService, never()).getTaskById(anyInt());
+	}
+	
+	@Test
+	public void searchTasks_invalid() throws Exception {
+		// mock task service
+		when(taskService.searchTasks(null, 20)).thenThrow(new TaskBadRequestException(TaskConstant.Required.query));
+		// execute task controller without q
+		MvcResult mvcResult = super.perform(get("/tasks/search")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals(TaskConstant.Required.query, errorResponse.getMessage());
+	}
+	
+	@Test
+	public void suggestTasks() throws Exception {
+		// mock task service
+		when(taskService.suggestTasks("swe", 10)).thenReturn(Arrays.asList(new TaskSuggestion(1, "Sweep the floor")));
+		// execute task controller without a limit
+		MvcResult mvcResult = super.perform(get("/tasks/suggest?prefix=swe")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok and the suggestion is returned
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		TaskSuggestion[] suggestions = super.convertMVCResultToMap(mvcResult, TaskSuggestion[].class);
+		assertEquals(1, suggestions.length);
+		assertEquals("Sweep the floor", suggestions[0].getSubject());
+		// verify suggestTasks is executed only 1 time with the default limit
+		verify(taskService, times(1)).suggestTasks("swe", 10);
+	}
+	
+	@Test
+	public void suggestTasks_invalid() throws Exception {
+		// mock task service
+		when(taskService.suggestTasks("swe", 1000)).thenThrow(new TaskBadRequestException("limit must be between 1 and 20"));
+		// execute task controller with a limit above the maximum
+		MvcResult mvcResult = super.perform(get("/tasks/suggest?prefix=swe&limit=1000")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals("limit must be between 1 and 20", errorResponse.getMessage());
+	}
+	
+	@Test
+	public void getTaskChanges() throws Exception {
+		// mock task service
+		Task changedTask = new Task(2, "Sweep the floor", null, TaskConstant.Status.done);
+		when(taskService.getChanges(4, 100)).thenReturn(new TaskChanges(Arrays.asList(changedTask), Arrays.asList(1), 6, false));
+		// execute task controller without a limit
+		MvcResult mvcResult = super.perform(get("/tasks/changes?since=4")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is ok and the changes are returned with the version to sync from next
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		TaskChanges changes = super.convertMVCResultToMap(mvcResult, TaskChanges.class);
+		assertEquals("Sweep the floor", changes.getItems().get(0).getSubject());
+		assertEquals(Arrays.asList(1), changes.getDeleted());
+		assertEquals(6, changes.getVersion());
+		// verify getChanges is executed only 1 time with the default limit
+		verify(taskService, times(1)).getChanges(4, 100);
+	}
+	
+	@Test
+	public void getTaskChanges_invalid() throws Exception {
+		// mock task service
+		when(taskService.getChanges(-1, 100)).thenThrow(new TaskBadRequestException("since must not be negative"));
+		// execute task controller with a negative version
+		MvcResult mvcResult = super.perform(get("/tasks/changes?since=-1")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is bad request with the message of the service
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals("since must not be negative", errorResponse.getMessage());
+	}
+	
+	@Test
+	public void streamTaskEvents() throws Exception {
+		// mock task event stream
+		when(taskEventStream.subscribe("abc-1")).thenReturn(new ResponseBodyEmitter());
+		// execute task controller with the id of the last event received
+		MvcResult mvcResult = mvc.perform(get("/tasks/events")
+				.header("Last-Event-ID", "abc-1")
+				.accept(MediaType.TEXT_EVENT_STREAM_VALUE)).andReturn();
+		// check the stream is started as server-sent events
+		assertTrue(mvcResult.getRequest().isAsyncStarted());
+		assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, mvcResult.getResponse().getContentType());
+		// verify subscribe is executed only 1 time with the last event id
+		verify(taskEventStream, times(1)).subscribe("abc-1");
+	}
+	
+	@Test
+	public void exportTasks() throws Exception {
+		// execute task controller
+		MvcResult mvcResult = mvc.perform(get("/tasks/export")
+				.accept(TaskConstant.ContentType.ndjson)).andReturn();
+		// check response is streamed asynchronously
+		assertTrue(mvcResult.getRequest().isAsyncStarted());
+		mvcResult = mvc.perform(asyncDispatch(mvcResult)).andReturn();
+		// check status is ok and content type is ndjson
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		assertEquals(TaskConstant.ContentType.ndjson, mvcResult.getResponse().getContentType());
+		// verify exportTasks is executed only 1 time and getAllTasks never be executed
+		verify(taskService, times(1)).exportTasks(any());
+		verify(taskService, never()).getAllTasks();
+	}
+	
+	@Test
+	public void getTaskStats() throws Exception {
+		// mock task counters
+		when(taskCounters.stats()).thenReturn(new TaskStats(3, 2, 1));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks/stats")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is 200 (OK) and the counts are returned without touching the task service
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		TaskStats stats = super.convertMVCResultToMap(mvcResult, TaskStats.class);
+		assertThat(stats).isNotNull()
+			.matches(t -> t.getTotal() == 3)
+			.matches(t -> t.getPending() == 2)
+			.matches(t -> t.getDone() == 1);
+		verify(taskService, never()).getAllTasks();
+	}
+	
+	@Test
+	public void getTaskById_Rejected() throws Exception {
+		// mock task request executor when its queue is full
+		doThrow(new TaskRejectedException("queue is full")).when(taskRequestExecutor).execute(any(Runnable.class));
+		// execute task controller
+		MvcResult mvcResult = super.perform(get("/tasks/1")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is service unavailable
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals(TaskConstant.Response.MSG_503, errorResponse.getMessage());
+		// verify the task service is never executed
+		verify(taskService, never()).getTaskById(ArgumentMatchers.anyInt());
+	}
+	
+	@Test
+	public void getTaskById_OverReadLimit() throws Exception {
+		// mock the read limit taken by calls still running
+		AdaptiveLimit.Permit first = taskAdmission.admit("GET");
+		AdaptiveLimit.Permit second = taskAdmission.admit("GET");
+		try {
+			// execute task controller
+			MvcResult mvcResult = super.perform(get("/tasks/1")
+					.accept(MediaType.APPLICATION_JSON_VALUE));
+			// check status is service unavailable with the time to retry after
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), mvcResult.getResponse().getStatus());
+			assertEquals("1", mvcResult.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+			// check a write is still admitted under its own limit
+			mvcResult = super.perform(delete("/tasks/" + this.mockSingleTask.getId())
+					.accept(MediaType.APPLICATION_JSON));
+			assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		} finally {
+			first.release(false);
+			second.release(false);
+		}
+		// verify the task service is never executed for the read
+		verify(taskService, never()).getTaskById(ArgumentMatchers.anyInt());
+	}
+	
 	@Test
 	public void getTaskById_Found() throws Exception {
 		// Initial mock up task
@@ -93,8 +493,8 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// mock task service
 		when(taskService.getTaskById(taskId)).thenReturn(this.mockSingleTask);
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(get("/tasks/" + taskId)
-				.accept(MediaType.APPLICATION_JSON_VALUE)).andReturn();
+		MvcResult mvcResult = super.perform(get("/tasks/" + taskId)
+				.accept(MediaType.APPLICATION_JSON_VALUE));
 		// check status is ok
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
@@ -109,6 +509,65 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		verify(taskService, times(1)).getTaskById(taskId);
 	}
 	
+	@Test
+	public void getTaskById_Cbor() throws Exception {
+		// Initial mock up task
+		int taskId = 1;
+		// mock task service
+		when(taskService.getTaskById(taskId)).thenReturn(this.mockSingleTask);
+		// execute task controller asking for CBOR
+		MvcResult mvcResult = super.perform(get("/tasks/" + taskId)
+				.accept(TaskConstant.ContentType.cbor));
+		// check status is ok and the task is encoded as CBOR instead of the cached JSON
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		assertTrue(mvcResult.getResponse().getContentType().startsWith(TaskConstant.ContentType.cbor));
+		Task task = new ObjectMapper(new CBORFactory()).readValue(mvcResult.getResponse().getContentAsByteArray(), Task.class);
+		assertEquals(this.mockSingleTask.getSubject(), task.getSubject());
+		verify(taskJsonCache, never()).get(any(Task.class));
+		// check the CBOR encoding has its own tag, the JSON one does not validate it
+		String eTag = "\"" + this.mockSingleTask.getVersion() + "-cbor\"";
+		assertEquals(eTag, mvcResult.getResponse().getHeader(HttpHeaders.ETAG));
+		mvcResult = super.perform(get("/tasks/" + taskId)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"" + this.mockSingleTask.getVersion() + "\"")
+				.accept(TaskConstant.ContentType.cbor));
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		mvcResult = super.perform(get("/tasks/" + taskId)
+				.header(HttpHeaders.IF_NONE_MATCH, eTag)
+				.accept(TaskConstant.ContentType.cbor));
+		assertEquals(HttpStatus.NOT_MODIFIED.value(), mvcResult.getResponse().getStatus());
+	}
+	
+	@Test
+	public void getTaskById_NotModified() throws Exception {
+		// Initial mock up task
+		int taskId = 1;
+		// mock task service
+		when(taskService.getTaskById(taskId)).thenReturn(this.mockSingleTask);
+		// execute task controller with the version tag of the task
+		MvcResult mvcResult = super.perform(get("/tasks/" + taskId)
+				.header(HttpHeaders.IF_NONE_MATCH, "\"" + this.mockSingleTask.getVersion() + "\"")
+				.accept(MediaType.APPLICATION_JSON_VALUE));
+		// check status is not modified and there is no body
+		assertEquals(HttpStatus.NOT_MODIFIED.value(), mvcResult.getResponse().getStatus());
+		assertEquals(0, mvcResult.getResponse().getContentLength());
+	}
+	
+	@Test
+	public void getTaskById_ServerFailure() throws Exception {
+		// mock task service when the database cannot be reached, then when the task does not exist
+		when(taskService.getTaskById(1)).thenThrow(new DataAccessResourceFailureException("Connection refused"));
+		when(taskService.getTaskById(2)).thenThrow(new TaskException("Not found id: 2"));
+		// execute task controller for the server failure
+		MvcResult mvcResult = super.perform(get("/tasks/1").accept(MediaType.APPLICATION_JSON));
+		// check the fast failure is counted as dropped and cuts the read limit
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), mvcResult.getResponse().getStatus());
+		assertEquals(1, meterRegistry.get("tasks.admission.limit").tag("type", "read").gauge().value(), 0);
+		// execute task controller for the task not found
+		super.perform(get("/tasks/2").accept(MediaType.APPLICATION_JSON));
+		// check the failure of the request is a sample within the target, the limit in use grows again
+		assertEquals(2, meterRegistry.get("tasks.admission.limit").tag("type", "read").gauge().value(), 0);
+	}
+	
 	@Test
 	public void getTaskById_NotFound() throws Exception {
 		// Initial mock up task
@@ -117,8 +576,8 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// mock task service
 		when(taskService.getTaskById(taskId)).thenThrow(new TaskException(errorMessage));
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(get("/tasks/" + taskId)
-				.accept(MediaType.APPLICATION_JSON)).andReturn();
+		MvcResult mvcResult = super.perform(get("/tasks/" + taskId)
+				.accept(MediaType.APPLICATION_JSON));
 		// check status is interval server error
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), status);
@@ -137,10 +596,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// initial mock up task
 		Task task = new Task("work", "at home", TaskConstant.Status.pending);
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(post("/tasks")
+		MvcResult mvcResult = super.perform(post("/tasks")
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(task))).andReturn();
+				.content(super.convertMapToJson(task)));
 		// check status is ok
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
@@ -151,6 +610,54 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		verify(taskService, times(1)).save(any(Task.class));
 	}
 	
+	@Test
+	public void createTask_Smile() throws Exception {
+		// initial mock up task
+		Task task = new Task("work", "at home", TaskConstant.Status.pending);
+		ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+		// execute task controller with a Smile body, preferring Smile over JSON for the response
+		MvcResult mvcResult = super.perform(post("/tasks")
+				.header(HttpHeaders.ACCEPT, TaskConstant.ContentType.smile + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.5")
+				.contentType(TaskConstant.ContentType.smile)
+				.content(smileMapper.writeValueAsBytes(task)));
+		// check status is ok and the response is encoded as Smile
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		SuccessResponse successResponse = smileMapper.readValue(mvcResult.getResponse().getContentAsByteArray(), 
+				SuccessResponse.class);
+		assertEquals(TaskConstant.Response.success, successResponse.getMessage());
+		// verify the decoded task is saved
+		ArgumentCaptor<Task> saved = ArgumentCaptor.forClass(Task.class);
+		verify(taskService, times(1)).save(saved.capture());
+		assertEquals("work", saved.getValue().getSubject());
+	}
+	
+	@Test
+	public void createTasks_Batch() throws Exception {
+		// initial mock up tasks
+		List<Task> tasks = Arrays.asList(new Task("work", "at home", TaskConstant.Status.pending),
+				new Task("work", "at office", TaskConstant.Status.pending));
+		BatchResponse mockResponse = new BatchResponse(1, 1, Arrays.asList(
+				new BatchItemResponse(0, 10, TaskConstant.Batch.created, TaskConstant.Response.success),
+				new BatchItemResponse(1, null, TaskConstant.Batch.failed, "Task subject[work] has already existed")));
+		// mock task service
+		when(taskService.saveAll(ArgumentMatchers.anyList())).thenReturn(mockResponse);
+		// execute task controller
+		MvcResult mvcResult = super.perform(post("/tasks/batch")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(tasks)));
+		// check status is ok
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		// check result of every item is returned
+		BatchResponse response = super.convertMVCResultToMap(mvcResult, BatchResponse.class);
+		assertEquals(1, response.getCreated());
+		assertEquals(1, response.getFailed());
+		assertEquals(Integer.valueOf(10), response.getItems().get(0).getId());
+		// verify saveAll is executed only 1 time and save never be executed
+		verify(taskService, times(1)).saveAll(ArgumentMatchers.anyList());
+		verify(taskService, never()).save(any(Task.class));
+	}
+	
 	@Test
 	public void createTask_AlreadyExisted() throws Exception {
 		// initial mock up task
@@ -159,10 +666,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// mock task service
 		when(taskService.save(any(Task.class))).thenThrow(new TaskException(errorMessage));
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(post("/tasks")
+		MvcResult mvcResult = super.perform(post("/tasks")
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(taskDuplicateSubject))).andReturn();
+				.content(super.convertMapToJson(taskDuplicateSubject)));
 		// check status is internal server error
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), status);
@@ -179,11 +686,14 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// initial mock up task
 		String errorMessage = "subject is a required field";
 		Task newTask = new Task("", "at home", TaskConstant.Status.pending);
+		// register meter registry for error counters
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		Metrics.addRegistry(meterRegistry);
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(post("/tasks")
+		MvcResult mvcResult = super.perform(post("/tasks")
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(newTask))).andReturn();
+				.content(super.convertMapToJson(newTask)));
 		// check status is bad request
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.BAD_REQUEST.value(), status);
@@ -191,6 +701,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
 		assertThat(errorResponse).isNotNull()
 			.matches(t -> t.getMessage().startsWith(errorMessage));
+		// check validation error is counted by route
+		assertEquals(1.0, meterRegistry.get("tasks.http.errors")
+				.tags("method", "POST", "uri", "/tasks", "type", "validation").counter().count(), 0.0);
+		Metrics.removeRegistry(meterRegistry);
 		// check save method never executed
 		verify(taskService, never()).save(any(Task.class));
 	}
@@ -201,10 +715,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		String errorMessage = "Invalid task status"; //subject is a required field
 		Task newTask = new Task("clean living room", "at home", TaskConstant.Status.pending+"g");
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(post("/tasks")
+		MvcResult mvcResult = super.perform(post("/tasks")
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(newTask))).andReturn();
+				.content(super.convertMapToJson(newTask)));
 		// check status is bad request
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.BAD_REQUEST.value(), status);
@@ -223,10 +737,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		Task updatedTask = this.mockSingleTask;
 		updatedTask.setSubject("Wash dishes");
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(put("/tasks/" + updateTaskId)
+		MvcResult mvcResult = super.perform(put("/tasks/" + updateTaskId)
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(updatedTask))).andReturn();
+				.content(super.convertMapToJson(updatedTask)));
 		// check status is OK
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
@@ -234,7 +748,62 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		SuccessResponse successResponse = super.convertMVCResultToMap(mvcResult, SuccessResponse.class);
 		assertEquals(TaskConstant.Response.success, successResponse.getMessage());
 		// verify update method is executed only 1 time with mockSingleTask as parameter
-		verify(taskService, times(1)).update(ArgumentMatchers.anyInt(), any(Task.class));
+		verify(taskService, times(1)).update(ArgumentMatchers.anyInt(), any(Task.class), ArgumentMatchers.isNull());
+	}
+	
+	@Test
+	public void editTask_ifMatch_conflict() throws Exception {
+		// initial mock up task
+		int updateTaskId = this.mockSingleTask.getId();
+		String errorMessage = "Task id[1] has been modified, expected version 3 but it is 4";
+		// mock task service
+		when(taskService.update(ArgumentMatchers.eq(updateTaskId), any(Task.class), ArgumentMatchers.eq(3L)))
+			.thenThrow(new TaskConflictException(errorMessage));
+		// execute task controller with the version the client has read
+		MvcResult mvcResult = super.perform(put("/tasks/" + updateTaskId)
+				.header(HttpHeaders.IF_MATCH, "\"3\"")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(this.mockSingleTask)));
+		// check status is precondition failed
+		assertEquals(HttpStatus.PRECONDITION_FAILED.value(), mvcResult.getResponse().getStatus());
+		// check error message is matched
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals(errorMessage, errorResponse.getMessage());
+		// check the tag of a binary encoding names the same version
+		mvcResult = super.perform(put("/tasks/" + updateTaskId)
+				.header(HttpHeaders.IF_MATCH, "\"3-smile\"")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(this.mockSingleTask)));
+		assertEquals(HttpStatus.PRECONDITION_FAILED.value(), mvcResult.getResponse().getStatus());
+	}
+	
+	@Test
+	public void editTask_ifMatch_invalid() throws Exception {
+		// initial mock up task and status
+		int updateTaskId = this.mockSingleTask.getId();
+		TaskStatus taskStatus = new TaskStatus();
+		taskStatus.setStatus(TaskConstant.Status.done);
+		// execute task controller with any version, a weak tag, a list of tags and a malformed tag
+		MvcResult anyVersion = super.perform(put("/tasks/" + updateTaskId).header(HttpHeaders.IF_MATCH, "*")
+				.contentType(MediaType.APPLICATION_JSON).content(super.convertMapToJson(this.mockSingleTask)));
+		MvcResult weak = super.perform(put("/tasks/" + updateTaskId).header(HttpHeaders.IF_MATCH, "W/\"3\"")
+				.contentType(MediaType.APPLICATION_JSON).content(super.convertMapToJson(this.mockSingleTask)));
+		MvcResult list = super.perform(put("/tasks/" + updateTaskId).header(HttpHeaders.IF_MATCH, "\"3\", \"4\"")
+				.contentType(MediaType.APPLICATION_JSON).content(super.convertMapToJson(this.mockSingleTask)));
+		MvcResult malformed = super.perform(patch("/tasks/" + updateTaskId).header(HttpHeaders.IF_MATCH, "\"three\"")
+				.contentType(MediaType.APPLICATION_JSON).content(super.convertMapToJson(taskStatus)));
+		// check any version is written, the weak tag fails its precondition and the others are bad requests
+		assertEquals(HttpStatus.OK.value(), anyVersion.getResponse().getStatus());
+		assertEquals(HttpStatus.PRECONDITION_FAILED.value(), weak.getResponse().getStatus());
+		assertEquals(HttpStatus.BAD_REQUEST.value(), list.getResponse().getStatus());
+		assertEquals(HttpStatus.BAD_REQUEST.value(), malformed.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(malformed, ErrorResponse.class);
+		assertEquals("If-Match must be a single task version entity tag or *: \"three\"", errorResponse.getMessage());
+		// verify only the write of any version reaches the task service
+		verify(taskService, times(1)).update(ArgumentMatchers.eq(updateTaskId), any(Task.class), ArgumentMatchers.isNull());
+		verify(taskService, never()).updateTaskStatus(any(), anyInt(), any());
 	}
 	
 	@Test
@@ -245,10 +814,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		Task updatedTask = this.mockSingleTask;
 		updatedTask.setSubject("");
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(put("/tasks/" + updateTaskId)
+		MvcResult mvcResult = super.perform(put("/tasks/" + updateTaskId)
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(updatedTask))).andReturn();
+				.content(super.convertMapToJson(updatedTask)));
 		// check status is bad request
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.BAD_REQUEST.value(), status);
@@ -257,7 +826,7 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		assertThat(errorResponse).isNotNull()
 			.matches(t -> t.getMessage().startsWith(errorMessage));
 		// check update method never executed
-		verify(taskService, never()).update(ArgumentMatchers.anyInt(), any(Task.class));
+		verify(taskService, never()).update(ArgumentMatchers.anyInt(), any(Task.class), ArgumentMatchers.any());
 	}
 	
 	@Test
@@ -268,10 +837,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		TaskStatus taskStatus = new TaskStatus();
 		taskStatus.setStatus(doneStatus);
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(patch("/tasks/" + updateTaskId)
+		MvcResult mvcResult = super.perform(patch("/tasks/" + updateTaskId)
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(taskStatus))).andReturn();
+				.content(super.convertMapToJson(taskStatus)));
 		// check status is ok
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
@@ -279,7 +848,7 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		SuccessResponse successResponse = super.convertMVCResultToMap(mvcResult, SuccessResponse.class);
 		assertEquals(TaskConstant.Response.success, successResponse.getMessage());
 		// verify updateTaskStatus method is executed only 1 time
-		verify(taskService, times(1)).updateTaskStatus(doneStatus, updateTaskId);
+		verify(taskService, times(1)).updateTaskStatus(doneStatus, updateTaskId, null);
 	}
 	
 	@Test
@@ -291,10 +860,10 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		TaskStatus taskStatus = new TaskStatus();
 		taskStatus.setStatus(doneStatus+"gg");
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(patch("/tasks/" + updateTaskId)
+		MvcResult mvcResult = super.perform(patch("/tasks/" + updateTaskId)
 				.accept(MediaType.APPLICATION_JSON)
 				.contentType(MediaType.APPLICATION_JSON)
-				.content(super.convertMapToJson(taskStatus))).andReturn();
+				.content(super.convertMapToJson(taskStatus)));
 		// check status is bad request
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.BAD_REQUEST.value(), status);
@@ -303,7 +872,106 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		assertThat(errorResponse).isNotNull()
 			.matches(t -> t.getMessage().startsWith(errorMessage));
 		// check updateTaskStatus method never be executed
-		verify(taskService, never()).updateTaskStatus(doneStatus, updateTaskId);
+		verify(taskService, never()).updateTaskStatus(ArgumentMatchers.anyString(), ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+	}
+	
+	@Test
+	public void updateTasksStatus_success() throws Exception {
+		// initial mock up request
+		BulkStatusRequest request = new BulkStatusRequest(Arrays.asList(1, 2, 3), TaskConstant.Status.done);
+		// mock task service
+		when(taskService.updateTasksStatus(TaskConstant.Status.done, Arrays.asList(1, 2, 3)))
+			.thenReturn(new BulkStatusResponse(2, Arrays.asList(3)));
+		// execute task controller
+		MvcResult mvcResult = super.perform(patch("/tasks/status")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(request)));
+		// check status is ok and the missing id is reported
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		BulkStatusResponse response = super.convertMVCResultToMap(mvcResult, BulkStatusResponse.class);
+		assertEquals(2, response.getUpdated());
+		assertEquals(Arrays.asList(3), response.getNotFound());
+		// check the single task status update is never executed
+		verify(taskService, never()).updateTaskStatus(any(), ArgumentMatchers.anyInt(), any());
+	}
+	
+	@Test
+	public void updateTasksStatus_invalid() throws Exception {
+		// initial mock up request without ids
+		BulkStatusRequest request = new BulkStatusRequest(null, TaskConstant.Status.done);
+		// execute task controller
+		MvcResult mvcResult = super.perform(patch("/tasks/status")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(request)));
+		// check status is bad request
+		assertEquals(HttpStatus.BAD_REQUEST.value(), mvcResult.getResponse().getStatus());
+		ErrorResponse errorResponse = super.convertMVCResultToMap(mvcResult, ErrorResponse.class);
+		assertEquals(TaskConstant.Required.ids, errorResponse.getMessage());
+	}
+	
+	@Test
+	public void deleteTasksByStatus_success() throws Exception {
+		// mock task service
+		when(taskService.deleteTasksByStatus(TaskConstant.Status.done)).thenReturn(new BulkDeleteResponse(1200, 3, Arrays.asList()));
+		// execute task controller
+		MvcResult mvcResult = super.perform(delete("/tasks?status=done")
+				.accept(MediaType.APPLICATION_JSON));
+		// check status is ok and the final count is returned
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		BulkDeleteResponse response = super.convertMVCResultToMap(mvcResult, BulkDeleteResponse.class);
+		assertEquals(1200, response.getDeleted());
+		assertEquals(3, response.getChunks());
+		// check the single task delete is never executed
+		verify(taskService, never()).delete(ArgumentMatchers.anyInt());
+	}
+	
+	@Test
+	public void deleteTasksByStatus_BulkLimit() throws Exception {
+		// mock task service
+		when(taskService.deleteTasksByStatus(TaskConstant.Status.done)).thenReturn(new BulkDeleteResponse(1200, 3, Arrays.asList()));
+		// check the bulk delete once the bulk limit is taken is rejected
+		AdaptiveLimit.Permit bulk = taskAdmission.admitBulk();
+		try {
+			MvcResult mvcResult = super.perform(delete("/tasks?status=done")
+					.accept(MediaType.APPLICATION_JSON));
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), mvcResult.getResponse().getStatus());
+		} finally {
+			bulk.release(false);
+		}
+		AdaptiveLimit.Permit firstWrite = taskAdmission.admit("DELETE");
+		AdaptiveLimit.Permit secondWrite = taskAdmission.admit("DELETE");
+		try {
+			// check the bulk delete is admitted under its own limit while the write limit is taken
+			MvcResult mvcResult = super.perform(delete("/tasks?status=done")
+					.accept(MediaType.APPLICATION_JSON));
+			assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		} finally {
+			firstWrite.release(false);
+			secondWrite.release(false);
+		}
+		// verify the service is executed once and the write limit is never cut by the bulk call
+		verify(taskService, times(1)).deleteTasksByStatus(TaskConstant.Status.done);
+		assertEquals(2, meterRegistry.get("tasks.admission.limit").tag("type", "write").gauge().value(), 0);
+	}
+	
+	@Test
+	public void deleteTasks_success() throws Exception {
+		// initial mock up request
+		BulkDeleteRequest request = new BulkDeleteRequest(Arrays.asList(1, 2));
+		// mock task service
+		when(taskService.deleteTasks(Arrays.asList(1, 2))).thenReturn(new BulkDeleteResponse(1, 1, Arrays.asList(2)));
+		// execute task controller
+		MvcResult mvcResult = super.perform(delete("/tasks")
+				.accept(MediaType.APPLICATION_JSON)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(super.convertMapToJson(request)));
+		// check status is ok and the missing id is reported
+		assertEquals(HttpStatus.OK.value(), mvcResult.getResponse().getStatus());
+		BulkDeleteResponse response = super.convertMVCResultToMap(mvcResult, BulkDeleteResponse.class);
+		assertEquals(1, response.getDeleted());
+		assertEquals(Arrays.asList(2), response.getNotFound());
 	}
 	
 	@Test
@@ -311,8 +979,8 @@ public class TaskControllerTest extends AbstractControllerTest<TaskController, E
 		// initial mock up task
 		int deleteTaskId = this.mockSingleTask.getId();
 		// execute task controller
-		MvcResult mvcResult = mvc.perform(delete("/tasks/" + deleteTaskId)
-				.accept(MediaType.APPLICATION_JSON)).andReturn();
+		MvcResult mvcResult = super.perform(delete("/tasks/" + deleteTaskId)
+				.accept(MediaType.APPLICATION_JSON));
 		// check status is ok
 		int status = mvcResult.getResponse().getStatus();
 		assertEquals(HttpStatus.OK.value(), status);
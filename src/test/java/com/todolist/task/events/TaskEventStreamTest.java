@@ -0,0 +1,133 @@
+package com.todolist.task.events;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+
+public class TaskEventStreamTest {
+	
+	private TaskEventStream taskEventStream;
+	
+	// Keeps the frames written to the client
+	private static class RecordingEmitter extends ResponseBodyEmitter {
+		
+		private final List<String> frames = new ArrayList<String>();
+		private boolean completed;
+		
+		@Override
+		public void send(Object object, MediaType mediaType) {
+			frames.add(new String((byte[]) object, StandardCharsets.UTF_8));
+		}
+		
+		@Override
+		public synchronized void complete() {
+			completed = true;
+		}
+		
+		private String lastEventId(int frame) {
+			String id = frames.get(frame).split("\n")[0];
+			return id.substring("id: ".length());
+		}
+		
+	}
+	
+	@Before
+	public void setup() {
+		taskEventStream = new TaskEventStream();
+		taskEventStream.bufferSize = 4;
+		taskEventStream.historySize = 3;
+		taskEventStream.maxSubscribers = 3;
+		taskEventStream.taskEventExecutor = new SyncTaskExecutor();
+		taskEventStream.objectMapper = new ObjectMapper();
+	}
+	
+	@Test
+	public void onTaskEvent_StreamsToSubscribers() {
+		// subscribe then write a task
+		RecordingEmitter emitter = new RecordingEmitter();
+		taskEventStream.subscribe(emitter, null);
+		taskEventStream.onTaskEvent(TaskEvent.created(new Task(1, "Sweep the floor", null, TaskConstant.Status.pending)));
+		taskEventStream.onTaskEvent(TaskEvent.statusChanged(1, TaskConstant.Status.done, TaskConstant.Status.pending));
+		// check every event is one frame named by its type with the event as data
+		assertEquals(2, emitter.frames.size());
+		assertThat(emitter.frames.get(0)).contains("\nevent: created\n").contains("\"subject\":\"Sweep the floor\"").endsWith("\n\n");
+		assertThat(emitter.frames.get(1)).contains("\nevent: status-changed\n").contains("\"previousStatus\":\"pending\"");
+	}
+	
+	@Test
+	public void subscribe_ResumesFromLastEventId() {
+		// write tasks while a first client is connected
+		RecordingEmitter first = new RecordingEmitter();
+		taskEventStream.subscribe(first, null);
+		for (int id = 1; id <= 3; id++)
+			taskEventStream.onTaskEvent(TaskEvent.deleted(id, TaskConstant.Status.pending));
+		// reconnect with the id of the first event
+		RecordingEmitter resumed = new RecordingEmitter();
+		taskEventStream.subscribe(resumed, first.lastEventId(0));
+		// check only the events after it are sent again
+		assertEquals(first.frames.subList(1, 3), resumed.frames);
+	}
+	
+	@Test
+	public void subscribe_LastEventIdOutOfHistory() {
+		// write more tasks than the history keeps
+		RecordingEmitter first = new RecordingEmitter();
+		taskEventStream.subscribe(first, null);
+		for (int id = 1; id <= 5; id++)
+			taskEventStream.onTaskEvent(TaskEvent.deleted(id, TaskConstant.Status.pending));
+		// reconnect with an event that left the history and with an id of another process
+		RecordingEmitter resumed = new RecordingEmitter();
+		taskEventStream.subscribe(resumed, first.lastEventId(0));
+		RecordingEmitter restarted = new RecordingEmitter();
+		taskEventStream.subscribe(restarted, "abc-1");
+		// check both are told to reload instead
+		assertThat(resumed.frames).containsExactly("event: reset\ndata: {}\n\n");
+		assertThat(restarted.frames).containsExactly("event: reset\ndata: {}\n\n");
+	}
+	
+	@Test
+	public void onTaskEvent_DisconnectsSlowSubscriber() {
+		// subscribe with an executor that never drains
+		List<Runnable> drains = new ArrayList<Runnable>();
+		taskEventStream.taskEventExecutor = drains::add;
+		RecordingEmitter emitter = new RecordingEmitter();
+		taskEventStream.subscribe(emitter, null);
+		// write one event more than the buffer holds
+		for (int id = 1; id <= 5; id++)
+			taskEventStream.onTaskEvent(TaskEvent.deleted(id, TaskConstant.Status.pending));
+		// check the subscriber is disconnected and the single drain requested ends the response without writing
+		assertEquals(0, taskEventStream.subscriberCount());
+		assertEquals(1, drains.size());
+		drains.get(0).run();
+		assertTrue(emitter.completed);
+		assertThat(emitter.frames).isEmpty();
+	}
+	
+	@Test
+	public void subscribe_TooManySubscribers() {
+		// subscribe up to the maximum
+		taskEventStream.subscribe(new RecordingEmitter(), null);
+		taskEventStream.subscribe(new RecordingEmitter(), null);
+		taskEventStream.subscribe(new RecordingEmitter(), null);
+		// check one more is rejected
+		assertThatThrownBy(() -> taskEventStream.subscribe(new RecordingEmitter(), null))
+				.isInstanceOf(RejectedExecutionException.class);
+	}
+	
+}
@@ -0,0 +1,78 @@
+package com.todolist.task.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class SqlStatementMetricsTest {
+	
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final SqlStatementMetrics sqlStatementMetrics = new SqlStatementMetrics(meterRegistry, Duration.ofMillis(100), 2, 5, 2);
+	
+	@Test
+	public void normalize_FoldsLiteralsAndInLists() {
+		// check literals become parameters and IN lists of any size read the same
+		assertEquals("select t.id from task t where t.subject=? and t.id>? and t.status in (?...)", 
+				SqlStatementMetrics.normalize("select t.id from task t\n where t.subject='it''s' and t.id>42 and t.status in (?, ?,?)")
+					.replace("??", "?"));
+		assertEquals(SqlStatementMetrics.normalize("delete from task where id in (?)"), 
+				SqlStatementMetrics.normalize("delete from task where id in (?, ?, ?, ?)"));
+		// check aliases and positional JPQL parameters keep their digits
+		assertEquals("SELECT task0_.id from Task t where t.id in (?...) and t.version=?2", 
+				SqlStatementMetrics.normalize("SELECT task0_.id from Task t where t.id in (?1, ?2) and t.version=?2"));
+	}
+	
+	@Test
+	public void executed_TimedByStatement() {
+		// execute statements differing in their literals and more distinct statements than timed on their own
+		sqlStatementMetrics.executed("select * from task where id=1", TimeUnit.MILLISECONDS.toNanos(2), 1);
+		sqlStatementMetrics.executed("select * from task where id=2", TimeUnit.MILLISECONDS.toNanos(4), 1);
+		sqlStatementMetrics.executed("delete from task where id=1", 1000, 1);
+		sqlStatementMetrics.executed("update task set status=1", 1000, 1);
+		// check one timer per statement, the one beyond the limit shares the other timer
+		assertEquals(2, meterRegistry.get("tasks.sql").tag("statement", "select * from task where id=?").timer().count());
+		assertEquals(1, meterRegistry.get("tasks.sql").tag("statement", "other").timer().count());
+	}
+	
+	@Test
+	public void completed_FlagsRepeatedSelect() throws InterruptedException {
+		// execute the same select once per row on another thread, as the request executor does
+		SqlStatementMetrics.RequestStatements request = sqlStatementMetrics.begin();
+		sqlStatementMetrics.bind(request);
+		Runnable loadRows = sqlStatementMetrics.decorate(() -> {
+			for (int id = 1; id <= 3; id++)
+				sqlStatementMetrics.executed("select * from task where id=" + id, 1000, 1);
+		});
+		sqlStatementMetrics.unbind();
+		Thread worker = new Thread(loadRows);
+		worker.start();
+		worker.join();
+		sqlStatementMetrics.completed(request, "GET", "/tasks");
+		// check the request is flagged with the repeated select
+		assertThat(sqlStatementMetrics.getFlaggedRequests()).hasSize(1)
+			.allMatch(flagged -> flagged.getRepeats() == 3 && flagged.getStatements() == 3)
+			.allMatch(flagged -> flagged.getRepeatedStatement().equals("select * from task where id=?"));
+		assertEquals(1, meterRegistry.get("tasks.http.statements").tag("uri", "/tasks").summary().count());
+		assertEquals(1.0, meterRegistry.get("tasks.http.statements.flagged").counter().count(), 0);
+	}
+	
+	@Test
+	public void completed_ChunksAreNotRepeats() {
+		// execute a select of an IN list chunk after chunk, within the statements of a request
+		SqlStatementMetrics.RequestStatements request = sqlStatementMetrics.begin();
+		sqlStatementMetrics.bind(request);
+		for (int chunk = 0; chunk < 5; chunk++)
+			sqlStatementMetrics.executed("select id, status from task where id in (?, ?, ?) for update", 1000, 1);
+		sqlStatementMetrics.unbind();
+		sqlStatementMetrics.completed(request, "DELETE", "/tasks");
+		// check the request is not flagged
+		assertThat(sqlStatementMetrics.getFlaggedRequests()).isEmpty();
+	}
+	
+}
@@ -0,0 +1,256 @@
+package com.todolist.task.repositories;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.Validator;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todolist.task.cache.TaskCache;
+import com.todolist.task.changes.TaskChangeVersions;
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+import com.todolist.task.exception.TaskException;
+import com.todolist.task.search.TaskSearchIndex;
+import com.todolist.task.search.TaskSuggestIndex;
+import com.todolist.task.services.TaskService;
+
+// Runs the queries of TaskRepository against H2, every test is rolled back
+@RunWith(SpringRunner.class)
+@DataJpaTest
+@Import(TaskService.class)
+public class TaskRepositoryTest {
+	
+	@Autowired
+	private TaskRepository taskRepository;
+	
+	@Autowired
+	private TaskService taskService;
+	
+	@PersistenceContext
+	private EntityManager entityManager;
+	
+	@MockBean
+	private ObjectMapper objectMapper;
+	
+	@MockBean
+	private Validator validator;
+	
+	@MockBean
+	private TaskCache taskCache;
+	
+	@MockBean
+	private TaskSearchIndex taskSearchIndex;
+	
+	@MockBean
+	private TaskSuggestIndex taskSuggestIndex;
+	
+	@MockBean
+	private TaskChangeVersions taskChangeVersions;
+	
+	private Task save(String subject, String status) {
+		Task task = new Task(subject, subject + " description", status);
+		task.setChangeVersion(1);
+		return taskRepository.saveAndFlush(task);
+	}
+	
+	@Test
+	public void updateTask_MatchesStatus() {
+		// initial a pending task
+		int id = save("Clean the room", TaskConstant.Status.pending).getId();
+		// check the variant keeping the status and the one flipping it only match their case
+		assertEquals(0, taskRepository.updateTaskByIdAndStatusNot(id, "Clean the house", "clean the house", null, 
+				TaskConstant.Status.pending, 2));
+		assertEquals(1, taskRepository.updateTaskByIdAndStatus(id, "Clean the house", "clean the house", null, 
+				TaskConstant.Status.pending, 2));
+		assertEquals(0, taskRepository.updateTaskByIdAndVersionAndStatus(id, "Clean the flat", "clean the flat", null, 
+				TaskConstant.Status.done, 1, 3));
+		assertEquals(1, taskRepository.updateTaskByIdAndVersionAndStatusNot(id, "Clean the flat", "clean the flat", null, 
+				"Done", 1, 3));
+		// check the versions and the written values
+		assertEquals(Long.valueOf(2), taskRepository.findVersionById(id));
+		assertEquals(0, taskRepository.updateTaskByIdAndVersionAndStatus(id, "Clean the flat", "clean the flat", null, 
+				TaskConstant.Status.done, 1, 4));
+		assertEquals(1, taskRepository.updateTaskByIdAndStatus(id, "Clean the flat", "clean the flat", "today", 
+				TaskConstant.Status.done, 4));
+		Task task = taskRepository.findById(id).get();
+		assertEquals("Clean the flat", task.getSubject());
+		assertEquals("today", task.getDescription());
+		assertEquals(TaskConstant.Status.done, task.getStatus());
+		assertEquals(3, task.getVersion());
+		assertEquals(4, task.getChangeVersion());
+		// check a missing task matches nothing
+		assertEquals(0, taskRepository.updateTaskByIdAndStatus(id + 1, "Missing", "missing", null, TaskConstant.Status.done, 5));
+		assertEquals(null, taskRepository.findVersionById(id + 1));
+	}
+	
+	@Test
+	public void updateTaskStatus_MatchesStatus() {
+		// initial a pending task and a done task
+		int pending = save("Feed the cat", TaskConstant.Status.pending).getId();
+		int done = save("Water the plants", TaskConstant.Status.done).getId();
+		// check the status variants only match their version and a status change
+		assertEquals(0, taskRepository.updateTaskStatusByIdAndStatusNot(TaskConstant.Status.pending, pending, 2));
+		assertEquals(0, taskRepository.updateTaskStatusByIdAndVersionAndStatusNot(TaskConstant.Status.done, pending, 1, 2));
+		assertEquals(1, taskRepository.updateTaskStatusByIdAndVersionAndStatusNot(TaskConstant.Status.done, pending, 0, 2));
+		assertEquals(0, taskRepository.updateTaskStatusByIdAndVersion(TaskConstant.Status.done, pending, 0, 3));
+		assertEquals(1, taskRepository.updateTaskStatusByIdAndVersion(TaskConstant.Status.done, pending, 1, 3));
+		assertEquals(1, taskRepository.updateTaskStatusById(TaskConstant.Status.pending, done, 4));
+		// check a bulk update writes the tasks found
+		assertEquals(2, taskRepository.updateTaskStatusByIdIn(TaskConstant.Status.pending, Arrays.asList(pending, done, done + 1), 5));
+		assertThat(taskRepository.countByStatus()).hasSize(1)
+			.allMatch(row -> row[0].equals(TaskConstant.Status.pending) && ((Long) row[1]) == 2);
+		assertEquals(5, taskRepository.findLastChangeVersion());
+	}
+	
+	@Test
+	public void statusConverter_StoresCode() {
+		// initial tasks of both statuses, one given in another case
+		int pending = save("Feed the cat", TaskConstant.Status.pending).getId();
+		int done = save("Water the plants", "Done").getId();
+		entityManager.clear();
+		// check the column holds the codes and reads back the canonical statuses
+		List<?> codes = entityManager.createNativeQuery("SELECT status FROM task ORDER BY id").getResultList();
+		assertThat(codes).extracting(code -> ((Number) code).intValue()).containsExactly(0, 1);
+		assertEquals(TaskConstant.Status.done, taskRepository.findById(done).get().getStatus());
+		// check status queries go through the (status, id) order
+		assertThat(taskRepository.findByStatusOrderByIdAsc(TaskConstant.Status.pending)).extracting(Task::getId)
+			.containsExactly(pending);
+		assertThat(taskRepository.findByStatusAndIdGreaterThanOrderByIdAsc(TaskConstant.Status.done, 0, PageRequest.of(0, 10)))
+			.extracting(Task::getId).containsExactly(done);
+	}
+	
+	@Test
+	public void forUpdate_ReadsAndLocksRows() {
+		// initial tasks
+		int first = save("Feed the cat", TaskConstant.Status.pending).getId();
+		int second = save("Water the plants", TaskConstant.Status.done).getId();
+		int third = save("Clean the room", TaskConstant.Status.done).getId();
+		// check the locking reads return the rows found
+		assertThat(taskRepository.findStatusesForUpdate(Arrays.asList(first, second, third + 1)))
+			.extracting(row -> row[0] + ":" + row[1])
+			.containsExactlyInAnyOrder(first + ":" + TaskConstant.Status.pending, second + ":" + TaskConstant.Status.done);
+		assertThat(taskRepository.findIdsByStatusForUpdate(TaskConstant.Status.done, second, PageRequest.of(0, 10)))
+			.containsExactly(third);
+	}
+	
+	@Test
+	public void tombstones_CopiedBeforeDelete() {
+		// initial tasks
+		int first = save("Feed the cat", TaskConstant.Status.pending).getId();
+		int second = save("Water the plants", TaskConstant.Status.done).getId();
+		// delete them with their tombstones, the missing id leaves none
+		assertEquals(2, taskRepository.insertTombstones(Arrays.asList(first, second, second + 1), 7));
+		assertEquals(2, taskRepository.deleteTasksByIdIn(Arrays.asList(first, second, second + 1)));
+		// check the tombstones are read in change order and the tasks are gone
+		List<TaskTombstone> tombstones = taskRepository.findTombstones(6, 7, PageRequest.of(0, 10));
+		assertThat(tombstones).extracting(TaskTombstone::getId).containsExactly(first, second);
+		assertThat(tombstones).extracting(TaskTombstone::getChangeVersion).containsOnly(7L);
+		assertEquals(7, taskRepository.findLastTombstoneChangeVersion());
+		assertThat(taskRepository.findTombstones(7, 8, PageRequest.of(0, 10))).isEmpty();
+		assertEquals(0, taskRepository.count());
+	}
+	
+	@Test
+	public void tombstones_PrunedUpToHorizon() {
+		// initial tasks deleted at versions 3 and 5
+		int first = save("Feed the cat", TaskConstant.Status.pending).getId();
+		int second = save("Water the plants", TaskConstant.Status.done).getId();
+		taskRepository.insertTombstones(Arrays.asList(first), 3);
+		taskRepository.insertTombstones(Arrays.asList(second), 5);
+		taskRepository.deleteTasksByIdIn(Arrays.asList(first, second));
+		// check only the tombstones up to the horizon are pruned and the horizon is stored
+		assertEquals(0, taskRepository.findTombstoneHorizon());
+		taskRepository.saveTombstoneHorizon(2);
+		taskRepository.saveTombstoneHorizon(4);
+		assertEquals(1, taskRepository.deleteTombstonesUpTo(4));
+		assertThat(taskRepository.findTombstones(0, 10, PageRequest.of(0, 10))).extracting(TaskTombstone::getId)
+			.containsExactly(second);
+		assertEquals(4, taskRepository.findTombstoneHorizon());
+	}
+	
+	@Test
+	public void changes_ReadInChangeOrder() {
+		// initial tasks written at increasing change versions
+		Task first = save("Feed the cat", TaskConstant.Status.pending);
+		Task second = save("Water the plants", TaskConstant.Status.done);
+		taskRepository.updateTaskStatusById(TaskConstant.Status.done, first.getId(), 3);
+		// check the changes after a version up to another are read in change order
+		assertThat(taskRepository.findChangedTasks(0, 3, PageRequest.of(0, 10))).extracting(Task::getId)
+			.containsExactly(second.getId(), first.getId());
+		assertThat(taskRepository.findChangedTasks(1, 2, PageRequest.of(0, 10))).isEmpty();
+	}
+	
+	@Test
+	public void fields_SelectOnlyTheirColumns() {
+		// initial tasks
+		int first = save("Feed the cat", TaskConstant.Status.pending).getId();
+		save("Water the plants", TaskConstant.Status.done);
+		// check the rows hold the fields in the order asked for
+		List<Object[]> rows = taskRepository.findAllFields(Arrays.asList("status", "id"));
+		assertThat(rows).hasSize(2);
+		assertThat(rows.get(0)).containsExactly(TaskConstant.Status.pending, first);
+		assertThat(taskRepository.findFieldsById(first, Collections.singletonList("subject"))).containsExactly("Feed the cat");
+		assertThat(taskRepository.findFieldsById(first + 100, Collections.singletonList("id"))).isNull();
+	}
+	
+	@Test
+	public void subjectKey_UniqueConstraint() {
+		// initial a task
+		save("Feed the cat", TaskConstant.Status.pending);
+		// check the subject key is found and another case of the subject violates the named unique constraint
+		assertThat(taskRepository.findExistingSubjectKeys(Arrays.asList("feed the cat", "water the plants")))
+			.containsExactly("feed the cat");
+		assertThatThrownBy(() -> save("FEED the Cat", TaskConstant.Status.done))
+			.isInstanceOf(DataIntegrityViolationException.class)
+			.hasCauseInstanceOf(ConstraintViolationException.class)
+			.matches(e -> ((ConstraintViolationException) e.getCause()).getConstraintName().toLowerCase()
+					.contains(Task.SUBJECT_KEY_CONSTRAINT));
+	}
+	
+	@Test
+	public void subjectKey_MappedToTaskException() {
+		// initial a task
+		save("Feed the cat", TaskConstant.Status.pending);
+		// check the service reports the violation of the unique constraint as a duplicated subject
+		assertThatThrownBy(() -> taskService.save(new Task("Feed the Cat", null, TaskConstant.Status.pending)))
+			.isInstanceOf(TaskException.class)
+			.hasMessage("Task subject[Feed the Cat] has already existed");
+	}
+	
+	@Test
+	public void save_IgnoresIdAndVersion() throws TaskException {
+		// initial task
+		Task existing = save("Feed the cat", TaskConstant.Status.pending);
+		// execute task service with a body carrying the id and a version of the existing task
+		Task body = new Task(existing.getId(), "Water the plants", null, TaskConstant.Status.done);
+		body.setVersion(3);
+		Task saved = taskService.save(body);
+		entityManager.clear();
+		// check a new task is created and the existing one is left as it was
+		assertThat(saved.getId()).isNotEqualTo(existing.getId());
+		assertEquals(0, saved.getVersion());
+		assertEquals(2, taskRepository.count());
+		assertEquals("Feed the cat", taskRepository.findById(existing.getId()).get().getSubject());
+	}
+	
+}
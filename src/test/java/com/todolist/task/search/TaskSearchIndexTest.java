@@ -0,0 +1,100 @@
+package com.todolist.task.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.repositories.TaskRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskSearchIndexTest {
+	
+	@InjectMocks
+	TaskSearchIndex taskSearchIndex;
+	
+	@Mock
+	TaskRepository taskRepository;
+	
+	@Test
+	public void search_SubjectRanksFirst() {
+		// index tasks holding the word in the description or in the subject
+		index(new Task(1, "Sweep the floor", "then clean the kitchen", TaskConstant.Status.pending));
+		index(new Task(2, "Clean the kitchen", null, TaskConstant.Status.pending));
+		index(new Task(3, "Water the plants", null, TaskConstant.Status.done));
+		// check the task holding the word in its subject comes first
+		TaskSearchIndex.Hits hits = taskSearchIndex.search("Kitchen", 20);
+		assertThat(hits.getIds()).containsExactly(2, 1);
+		assertEquals(2, hits.getTotal());
+	}
+	
+	@Test
+	public void search_EveryTermAndPrefix() {
+		// index tasks sharing some of the words
+		index(new Task(1, "Clean the kitchen", null, TaskConstant.Status.pending));
+		index(new Task(2, "Clean the car", null, TaskConstant.Status.pending));
+		index(new Task(3, "Cleaning day", "kitchen and car", TaskConstant.Status.pending));
+		// check every term must match
+		assertThat(taskSearchIndex.search("clean car", 20).getIds()).containsExactly(2);
+		// check a prefix term matches every word starting with it
+		assertThat(taskSearchIndex.search("clean* kitchen", 20).getIds()).containsExactlyInAnyOrder(1, 3);
+		// check an unknown term matches nothing
+		assertEquals(0, taskSearchIndex.search("clean garden", 20).getTotal());
+	}
+	
+	@Test
+	public void search_Limit() {
+		// index more matching tasks than the limit
+		for (int id = 1; id <= 5; id++)
+			index(new Task(id, "Task " + id, null, TaskConstant.Status.pending));
+		// check the limit cuts the ids, ties go to the oldest task, and the total counts every match
+		TaskSearchIndex.Hits hits = taskSearchIndex.search("task", 2);
+		assertThat(hits.getIds()).containsExactly(1, 2);
+		assertEquals(5, hits.getTotal());
+	}
+	
+	@Test
+	public void onTaskEvent_UpdateAndDelete() {
+		// index tasks then rewrite one and delete the other
+		index(new Task(1, "Clean the kitchen", null, TaskConstant.Status.pending));
+		index(new Task(2, "Clean the car", null, TaskConstant.Status.pending));
+		taskSearchIndex.onTaskEvent(TaskEvent.updated(new Task(1, "Wash the car", null, TaskConstant.Status.pending),
+				TaskConstant.Status.pending));
+		taskSearchIndex.onTaskEvent(TaskEvent.deleted(2, TaskConstant.Status.pending));
+		// check the old words are gone and the deleted task is never found
+		assertEquals(0, taskSearchIndex.search("kitchen", 20).getTotal());
+		assertThat(taskSearchIndex.search("car", 20).getIds()).containsExactly(1);
+		assertEquals(0, taskSearchIndex.search("clean", 20).getTotal());
+	}
+	
+	@Test
+	public void build_FromRepository() {
+		// mock task repository with one page of tasks
+		when(taskRepository.findByIdGreaterThanOrderByIdAsc(eq(0), any())).thenReturn(Arrays.asList(
+				new Task(1, "Sweep the floor", null, TaskConstant.Status.pending),
+				new Task(2, "Clean the floor", null, TaskConstant.Status.done)));
+		// build the index
+		taskSearchIndex.build();
+		// check every task of the repository is found
+		assertThat(taskSearchIndex.search("floor", 20).getIds()).containsExactly(1, 2);
+		assertEquals(Collections.singletonList(2), taskSearchIndex.search("clean", 20).getIds());
+	}
+	
+	private void index(Task task) {
+		taskSearchIndex.onTaskEvent(TaskEvent.created(task));
+	}
+	
+}
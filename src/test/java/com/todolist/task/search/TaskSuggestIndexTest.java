@@ -0,0 +1,78 @@
+package com.todolist.task.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.model.TaskSuggestion;
+import com.todolist.task.repositories.TaskRepository;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskSuggestIndexTest {
+	
+	@InjectMocks
+	TaskSuggestIndex taskSuggestIndex;
+	
+	@Mock
+	TaskRepository taskRepository;
+	
+	@Test
+	public void suggest_PrefixIgnoringCase() {
+		// index subjects in no particular order
+		index(new Task(1, "Buy milk", null, TaskConstant.Status.pending));
+		index(new Task(2, "Clean the car", null, TaskConstant.Status.pending));
+		index(new Task(3, "buy bread", null, TaskConstant.Status.done));
+		index(new Task(4, "Bus ticket", null, TaskConstant.Status.pending));
+		// check the subjects starting with the prefix come in key order with their own case
+		assertThat(taskSuggestIndex.suggest("BUY", 10)).extracting(TaskSuggestion::getSubject)
+				.containsExactly("buy bread", "Buy milk");
+		assertThat(taskSuggestIndex.suggest("bu", 10)).extracting(TaskSuggestion::getId).containsExactly(4, 3, 1);
+		// check the limit and an unknown prefix
+		assertThat(taskSuggestIndex.suggest("bu", 2)).extracting(TaskSuggestion::getId).containsExactly(4, 3);
+		assertThat(taskSuggestIndex.suggest("water", 10)).isEmpty();
+	}
+	
+	@Test
+	public void onTaskEvent_RenameAndDelete() {
+		// index tasks then rename one and delete the other
+		index(new Task(1, "Buy milk", null, TaskConstant.Status.pending));
+		index(new Task(2, "Buy bread", null, TaskConstant.Status.pending));
+		taskSuggestIndex.onTaskEvent(TaskEvent.updated(new Task(1, "Sell milk", null, TaskConstant.Status.pending),
+				TaskConstant.Status.pending));
+		taskSuggestIndex.onTaskEvent(TaskEvent.deleted(2, TaskConstant.Status.pending));
+		// check only the new subject is suggested
+		assertThat(taskSuggestIndex.suggest("buy", 10)).isEmpty();
+		assertThat(taskSuggestIndex.suggest("sell", 10)).extracting(TaskSuggestion::getId).containsExactly(1);
+		assertEquals(1, taskSuggestIndex.size());
+	}
+	
+	@Test
+	public void build_FromRepository() {
+		// mock task repository with one page of tasks
+		when(taskRepository.findByIdGreaterThanOrderByIdAsc(eq(0), any())).thenReturn(Arrays.asList(
+				new Task(1, "Sweep the floor", null, TaskConstant.Status.pending),
+				new Task(2, "Sweep the roof", null, TaskConstant.Status.done)));
+		// build the index
+		taskSuggestIndex.build();
+		// check every subject of the repository is suggested
+		assertThat(taskSuggestIndex.suggest("sweep the", 10)).extracting(TaskSuggestion::getId).containsExactly(1, 2);
+	}
+	
+	private void index(Task task) {
+		taskSuggestIndex.onTaskEvent(TaskEvent.created(task));
+	}
+	
+}
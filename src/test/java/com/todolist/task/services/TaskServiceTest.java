@@ -2,28 +2,69 @@ package com.todolist.task.services;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
+
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.todolist.task.cache.TaskCache;
+import com.todolist.task.changes.TaskChangeVersions;
 import com.todolist.task.constant.TaskConstant;
 import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+import com.todolist.task.events.TaskEvent;
+import com.todolist.task.exception.TaskBadRequestException;
+import com.todolist.task.exception.TaskConflictException;
 import com.todolist.task.exception.TaskException;
+import com.todolist.task.model.BatchResponse;
+import com.todolist.task.model.BulkDeleteResponse;
+import com.todolist.task.model.BulkStatusResponse;
+import com.todolist.task.model.TaskChanges;
+import com.todolist.task.model.TaskFields;
+import com.todolist.task.model.TaskPage;
+import com.todolist.task.model.TaskSearchResult;
+import com.todolist.task.model.TaskSuggestion;
 import com.todolist.task.repositories.TaskRepository;
+import com.todolist.task.search.TaskSearchIndex;
+import com.todolist.task.search.TaskSuggestIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TaskServiceTest {
@@ -34,6 +75,33 @@ public class TaskServiceTest {
 	@Mock
 	TaskRepository taskRepository;
 	
+	@Mock
+	EntityManager entityManager;
+	
+	@Spy
+	ObjectMapper objectMapper = new ObjectMapper();
+	
+	@Spy
+	Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+	
+	@Spy
+	TaskCache taskCache = new TaskCache(100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+	
+	@Mock
+	ApplicationEventPublisher eventPublisher;
+	
+	@Mock
+	PlatformTransactionManager transactionManager;
+	
+	@Mock
+	TaskSearchIndex taskSearchIndex;
+	
+	@Mock
+	TaskSuggestIndex taskSuggestIndex;
+	
+	@Mock
+	TaskChangeVersions taskChangeVersions;
+	
 	private final Task mockSingleTask = new Task(1, "Clean the room", "Finished before 6 pm", TaskConstant.Status.pending);
 	
 	@Test
@@ -56,6 +124,170 @@ public class TaskServiceTest {
 		verify(taskRepository, times(1)).findAll();
 	}
 	
+	@Test
+	public void getAllTaskFields_SelectsOnlyFields() throws TaskException {
+		// mock task repository with rows of the fields and the version
+		List<String> selection = Arrays.asList("id", "subject", "version");
+		when(taskRepository.findAllFields(selection)).thenReturn(Arrays.asList(
+				new Object[] { 1, "Clean the room", 3L }, new Object[] { 2, "Do homework", 1L }));
+		// execute task service with the fields in another order
+		List<TaskFields> tasks = taskService.getAllTaskFields("subject, id");
+		// check only the fields asked for are kept, in the order of the task attributes
+		assertEquals(2, tasks.size());
+		assertThat(tasks.get(0).getFields()).containsExactly(entry("id", 1), entry("subject", "Clean the room"));
+		assertEquals(3L, tasks.get(0).getVersion());
+		verify(taskRepository, never()).findAll();
+	}
+	
+	@Test
+	public void getTaskFields_Cached() throws TaskException {
+		// mock task cache holding the task
+		taskCache.put(this.mockSingleTask, taskCache.stamp());
+		// execute task service
+		TaskFields task = taskService.getTaskFields(1, "status,version");
+		// check the fields are taken from the cached task without reading the row
+		assertThat(task.getFields()).containsExactly(entry("status", TaskConstant.Status.pending), entry("version", 0L));
+		verify(taskRepository, never()).findFieldsById(anyInt(), any());
+		// check an unknown field and an empty fieldset are rejected
+		assertThatThrownBy(() -> taskService.getTaskFields(1, "id,owner"))
+			.isInstanceOf(TaskBadRequestException.class);
+		assertThatThrownBy(() -> taskService.getTaskFields(1, " , "))
+			.isInstanceOf(TaskBadRequestException.class)
+			.hasMessage(TaskConstant.Required.fields);
+	}
+	
+	@Test
+	public void getTaskPage_FollowCursor() throws TaskException {
+		// initial mock up task
+		List<Task> firstPage = Arrays.asList(this.mockSingleTask,
+				new Task(2, "Feed the cat", "twice a day", TaskConstant.Status.pending),
+				new Task(3, "Water the plants", "in the garden", TaskConstant.Status.done));
+		List<Task> lastPage = Arrays.asList(new Task(3, "Water the plants", "in the garden", TaskConstant.Status.done));
+		// mock task repository
+		when(taskRepository.findByIdGreaterThanOrderByIdAsc(eq(0), any(Pageable.class))).thenReturn(firstPage);
+		when(taskRepository.findByIdGreaterThanOrderByIdAsc(eq(2), any(Pageable.class))).thenReturn(lastPage);
+		// execute task service for the first page
+		TaskPage page = taskService.getTaskPage(null, 2, null);
+		// check page is cut at limit and next cursor is returned
+		assertEquals(2, page.getItems().size());
+		assertThat(page.getNextCursor()).isNotNull();
+		// execute task service for the next page
+		TaskPage nextPage = taskService.getTaskPage(page.getNextCursor(), 2, null);
+		// check last page has no next cursor
+		assertEquals(1, nextPage.getItems().size());
+		assertThat(nextPage.getNextCursor()).isNull();
+	}
+	
+	@Test
+	public void getTaskPage_InvalidCursor() throws TaskException {
+		// check invalid cursor and limit and then throw TaskBadRequestException
+		assertThatThrownBy(() -> taskService.getTaskPage("not-a-cursor", 2, null))
+			.isInstanceOf(TaskBadRequestException.class)
+			.hasMessage("Invalid cursor: not-a-cursor");
+		assertThatThrownBy(() -> taskService.getTaskPage(null, TaskConstant.Paging.maxLimit + 1, null))
+			.isInstanceOf(TaskBadRequestException.class);
+		// check repository never be executed
+		verify(taskRepository, never()).findByIdGreaterThanOrderByIdAsc(anyInt(), any(Pageable.class));
+	}
+	
+	@Test
+	public void getTasksByStatus() throws TaskException {
+		// initial mock up task
+		List<Task> doneTasks = Arrays.asList(new Task(3, "Water the plants", "in the garden", TaskConstant.Status.done));
+		// mock task repository
+		when(taskRepository.findByStatusOrderByIdAsc(TaskConstant.Status.done)).thenReturn(doneTasks);
+		// execute task service with a status in any case
+		List<Task> tasks = taskService.getTasksByStatus("DONE");
+		// check the filter is pushed down to the repository with the lower-cased status
+		assertEquals(1, tasks.size());
+		verify(taskRepository, times(1)).findByStatusOrderByIdAsc(TaskConstant.Status.done);
+		verify(taskRepository, never()).findAll();
+	}
+	
+	@Test
+	public void searchTasks_KeepsRank() throws TaskException {
+		// mock search index and task repository, the repository returns the tasks in id order
+		when(taskSearchIndex.search("clean room", 2)).thenReturn(new TaskSearchIndex.Hits(Arrays.asList(3, 1), 5));
+		when(taskRepository.findAllById(Arrays.asList(3, 1))).thenReturn(Arrays.asList(this.mockSingleTask,
+				new Task(3, "Clean the kitchen room", null, TaskConstant.Status.done)));
+		// execute task service
+		TaskSearchResult result = taskService.searchTasks("clean room", 2);
+		// check the tasks follow the rank of the index and the total counts every match
+		assertThat(result.getItems()).extracting(Task::getId).containsExactly(3, 1);
+		assertEquals(5, result.getTotal());
+	}
+	
+	@Test
+	public void searchTasks_EmptyQuery() throws TaskException {
+		// check an empty query and a limit above the maximum and then throw TaskBadRequestException
+		assertThatThrownBy(() -> taskService.searchTasks(" ", 20)).isInstanceOf(TaskBadRequestException.class);
+		assertThatThrownBy(() -> taskService.searchTasks("sweep", TaskConstant.Paging.maxLimit + 1))
+			.isInstanceOf(TaskBadRequestException.class);
+		// check search index never be executed
+		verify(taskSearchIndex, never()).search(any(), anyInt());
+	}
+	
+	@Test
+	public void suggestTasks() throws TaskException {
+		// mock suggest index
+		List<TaskSuggestion> suggestions = Arrays.asList(new TaskSuggestion(1, "Sweep the floor"));
+		when(taskSuggestIndex.suggest("sw", 10)).thenReturn(suggestions);
+		// execute task service and check the suggestions come from the index alone
+		assertEquals(suggestions, taskService.suggestTasks("sw", 10));
+		verify(taskRepository, never()).findAll();
+	}
+	
+	@Test
+	public void suggestTasks_InvalidLimit() throws TaskException {
+		// check a limit above the maximum and a missing prefix and then throw TaskBadRequestException
+		assertThatThrownBy(() -> taskService.suggestTasks("sw", TaskConstant.Suggest.maxLimit + 1))
+			.isInstanceOf(TaskBadRequestException.class);
+		assertThatThrownBy(() -> taskService.suggestTasks(null, 10)).isInstanceOf(TaskBadRequestException.class);
+		// check suggest index never be executed
+		verify(taskSuggestIndex, never()).suggest(any(), anyInt());
+	}
+	
+	@Test
+	public void getTaskPage_ByStatus() throws TaskException {
+		// mock task repository
+		when(taskRepository.findByStatusAndIdGreaterThanOrderByIdAsc(eq(TaskConstant.Status.pending), eq(0), any(Pageable.class)))
+			.thenReturn(Arrays.asList(this.mockSingleTask));
+		// execute task service
+		TaskPage page = taskService.getTaskPage(null, 2, TaskConstant.Status.pending);
+		// check the only page has no next cursor
+		assertEquals(1, page.getItems().size());
+		assertThat(page.getNextCursor()).isNull();
+		verify(taskRepository, never()).findByIdGreaterThanOrderByIdAsc(anyInt(), any(Pageable.class));
+	}
+	
+	@Test
+	public void getTasksByStatus_Invalid() throws TaskException {
+		// check invalid status and then throw TaskBadRequestException
+		assertThatThrownBy(() -> taskService.getTasksByStatus("later"))
+			.isInstanceOf(TaskBadRequestException.class)
+			.hasMessage("Invalid task status: later");
+	}
+	
+	@Test
+	public void exportTasks() throws IOException {
+		// initial mock up task
+		Task secondTask = new Task(2, "Feed the cat", "twice a day", TaskConstant.Status.done);
+		// mock task repository
+		when(taskRepository.streamAllTasks()).thenReturn(Stream.of(this.mockSingleTask, secondTask));
+		// execute task service
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long count = taskService.exportTasks(out);
+		// check every task is written as its own line
+		String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+		assertEquals(2, count);
+		assertEquals(2, lines.length);
+		assertThat(lines).allMatch(line -> line.startsWith("{"));
+		assertEquals("Feed the cat", objectMapper.readValue(lines[1], Task.class).getSubject());
+		// check every exported task is detached from the persistence context
+		verify(entityManager, times(1)).detach(this.mockSingleTask);
+		verify(entityManager, times(1)).detach(secondTask);
+	}
+	
 	@Test
 	public void getTaskById_Found() throws TaskException {
 		// initial mock up task
@@ -76,6 +308,39 @@ public class TaskServiceTest {
 		verify(taskRepository, never()).findById(2);
 	}
 	
+	@Test
+	public void getTaskById_Cached() throws TaskException {
+		// initial mock up task
+		int taskId = 1;
+		// mock task repository
+		when(taskRepository.findById(taskId)).thenReturn(Optional.ofNullable(this.mockSingleTask));
+		// execute task service twice
+		taskService.getTaskById(taskId);
+		Task task = taskService.getTaskById(taskId);
+		// check the second read is served from the cache
+		assertThat(task).isSameAs(this.mockSingleTask);
+		verify(taskRepository, times(1)).findById(taskId);
+		// check the task is loaded again once a write evicts it
+		taskCache.evictOnCommit(TaskEvent.statusChanged(taskId, TaskConstant.Status.done, TaskConstant.Status.pending));
+		taskService.getTaskById(taskId);
+		verify(taskRepository, times(2)).findById(taskId);
+	}
+	
+	@Test
+	public void getTaskById_NotCachedWhenEvictedDuringLoad() throws TaskException {
+		// initial mock up task
+		int taskId = 1;
+		// mock task repository when a write is committed while the row is being loaded
+		when(taskRepository.findById(taskId)).thenAnswer(invocation -> {
+			taskCache.evictOnCommit(TaskEvent.deleted(taskId, TaskConstant.Status.pending));
+			return Optional.ofNullable(this.mockSingleTask);
+		});
+		// execute task service
+		taskService.getTaskById(taskId);
+		// check the possibly stale task is not kept in the cache
+		assertThat(taskCache.get(taskId)).isNull();
+	}
+	
 	@Test
 	public void getTaskById_NotFound() throws TaskException {
 		// initial mock up task
@@ -93,7 +358,7 @@ public class TaskServiceTest {
 		// initial mock up task
 		Task newTask = new Task("Clean the room", "at home", TaskConstant.Status.done);
 		// mock task repository
-		when(taskRepository.save(newTask)).thenReturn(newTask);
+		when(taskRepository.saveAndFlush(newTask)).thenReturn(newTask);
 		// check create task
 		Task task = taskService.save(newTask);
 		// check task is created successfully
@@ -101,40 +366,112 @@ public class TaskServiceTest {
 			.matches(t -> t.getSubject().equals(newTask.getSubject()))
 			.matches(t -> t.getDescription().equals(newTask.getDescription()))
 			.matches(t -> t.getStatus().equals(newTask.getStatus()));
-		// check save method is executed only 1 time with mockSingleTask as parameter
-		verify(taskRepository, times(1)).save(any(Task.class));
+		// check saveAndFlush method is executed only 1 time with mockSingleTask as parameter
+		verify(taskRepository, times(1)).saveAndFlush(any(Task.class));
 	}
 	
 	@Test
 	public void createTask_AlreadyExisted() throws TaskException {
 		// initial mock up task
 		Task taskDuplicateSubject = new Task("Clean the room", "at home", TaskConstant.Status.done);
-		// mock task repository
-		when(taskRepository.findTaskBySubject("Clean the room")).thenReturn(this.mockSingleTask);
+		// mock task repository when the unique subject index is violated
+		when(taskRepository.saveAndFlush(taskDuplicateSubject)).thenThrow(duplicateSubjectViolation());
 		// check create duplicate task subject and then throw exception
 		assertThatThrownBy(() -> taskService.save(taskDuplicateSubject))
-			.isInstanceOf(TaskException.class);
-		// check findTaskBySubject method is executed only 1 time with subject "Clean the room" as parameter
-		verify(taskRepository, times(1)).findTaskBySubject("Clean the room");
+			.isInstanceOf(TaskException.class)
+			.hasMessage("Task subject[Clean the room] has already existed");
+		// check saveAndFlush method is executed only 1 time without any lookup before
+		verify(taskRepository, times(1)).saveAndFlush(taskDuplicateSubject);
+		verify(taskRepository, never()).findById(any());
+	}
+	
+	@Test
+	public void createTasks_Batch() throws TaskException {
+		// initial mock up tasks, index 1 is existed, index 2 is invalid and index 3 is duplicated in the batch
+		List<Task> newTasks = Arrays.asList(
+				new Task("Feed the cat", "twice a day", TaskConstant.Status.pending),
+				new Task("clean the ROOM", "at home", TaskConstant.Status.pending),
+				new Task("Water the plants", "in the garden", TaskConstant.Status.pending + "g"),
+				new Task("feed the cat", "again", TaskConstant.Status.done));
+		// mock task repository
+		when(taskRepository.findExistingSubjectKeys(any())).thenReturn(Arrays.asList("clean the room"));
+		// execute task service
+		BatchResponse response = taskService.saveAll(newTasks);
+		// check only the first task is created and the others are reported
+		assertEquals(1, response.getCreated());
+		assertEquals(3, response.getFailed());
+		assertThat(response.getItems()).hasSize(4)
+			.matches(items -> items.get(0).getStatus().equals(TaskConstant.Batch.created))
+			.matches(items -> items.get(1).getMessage().endsWith("has already existed"))
+			.matches(items -> items.get(2).getMessage().equals("Invalid task status"))
+			.matches(items -> items.get(3).getMessage().endsWith("has already existed"));
+		// check duplicate subjects are looked up once and accepted tasks are saved at once
+		verify(taskRepository, times(1)).findExistingSubjectKeys(any());
+		verify(taskRepository, times(1)).saveAll(Arrays.asList(newTasks.get(0)));
 	}
 	
 	@Test
 	public void editTask_Success() throws TaskException {
 		// initial mock up task
 		int updateTaskId = 1;
-		Task updatedTask = new Task(updateTaskId, "Clean the floor", "at the office", TaskConstant.Status.pending);
-		// mock task repository
-		when(taskRepository.findById(updateTaskId)).thenReturn(Optional.ofNullable(this.mockSingleTask));
+		Task updatedTask = new Task("Clean the floor", "at the office", TaskConstant.Status.pending);
+		// mock task repository and the change version of the write
+		when(taskChangeVersions.next()).thenReturn(7L);
+		when(taskRepository.updateTaskByIdAndStatus(updateTaskId, "Clean the floor", "clean the floor", "at the office", 
+				TaskConstant.Status.pending, 7L)).thenReturn(1);
+		when(taskRepository.findVersionById(updateTaskId)).thenReturn(5L);
 		// check update task
-		Task task = taskService.update(updateTaskId, updatedTask);
-		// check update task is finish
-		assertThat(task).isNotNull()
-			.matches(t -> t.getId() == updateTaskId)
-			.matches(t -> t.getSubject().equals(updatedTask.getSubject()))
-			.matches(t -> t.getDescription().equals(updatedTask.getDescription()))
-			.matches(t -> t.getStatus().equals(updatedTask.getStatus()));
-		// check findById method is executed only 1 time with updateTaskId, updatedTask as parameter
-		verify(taskRepository, times(2)).findById(updateTaskId);
+		int numOfUpdatedRows = taskService.update(updateTaskId, updatedTask, null);
+		// check associated rows are updated
+		assertEquals(1, numOfUpdatedRows);
+		// check the task keeping its status is written with one statement and never loaded, only its new version is read back
+		verify(taskRepository, never()).updateTaskByIdAndStatusNot(anyInt(), any(), any(), any(), any(), anyLong());
+		verify(taskRepository, never()).findById(updateTaskId);
+		verify(taskRepository, times(1)).findVersionById(updateTaskId);
+		ArgumentCaptor<TaskEvent> event = ArgumentCaptor.forClass(TaskEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		// check the event carries the stored task and the request body is left as it is
+		assertEquals(updateTaskId, event.getValue().getTask().getId());
+		assertEquals(5L, event.getValue().getTask().getVersion());
+		assertEquals(7L, event.getValue().getTask().getChangeVersion());
+		assertEquals(0, updatedTask.getId());
+	}
+	
+	@Test
+	public void editTask_VersionMatched() throws TaskException {
+		// initial mock up task sent with a stale version in its body
+		int updateTaskId = 1;
+		Task updatedTask = new Task("Clean the floor", "at the office", "Done");
+		updatedTask.setVersion(77L);
+		// mock task repository when the expected version matches
+		when(taskRepository.updateTaskByIdAndVersionAndStatusNot(updateTaskId, "Clean the floor", "clean the floor", "at the office", 
+				"Done", 3L, 0L)).thenReturn(1);
+		// check update task
+		assertEquals(1, taskService.update(updateTaskId, updatedTask, 3L));
+		// check the status flip is written after the UPDATE keeping the status matched nothing
+		verify(taskRepository, times(1)).updateTaskByIdAndVersionAndStatus(updateTaskId, "Clean the floor", "clean the floor", 
+				"at the office", "Done", 3L, 0L);
+		// check the event carries the version following the expected one, nothing is read back
+		verify(taskRepository, never()).findVersionById(updateTaskId);
+		ArgumentCaptor<TaskEvent> event = ArgumentCaptor.forClass(TaskEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertEquals(4L, event.getValue().getTask().getVersion());
+		assertEquals(TaskConstant.Status.done, event.getValue().getTask().getStatus());
+		assertEquals(TaskConstant.Status.pending, event.getValue().getPreviousStatus());
+	}
+	
+	@Test
+	public void editTask_AlreadyExisted() throws TaskException {
+		// initial mock up task
+		int updateTaskId = 1;
+		Task updatedTask = new Task(updateTaskId, "Feed the cat", "at the office", TaskConstant.Status.pending);
+		// mock task repository when the unique subject index is violated
+		when(taskRepository.updateTaskByIdAndStatus(updateTaskId, "Feed the cat", "feed the cat", "at the office", 
+				TaskConstant.Status.pending, 0L)).thenThrow(duplicateSubjectViolation());
+		// check update task and then throw task exception
+		assertThatThrownBy(() -> taskService.update(updateTaskId, updatedTask, null))
+			.isInstanceOf(TaskException.class)
+			.hasMessage("Task subject[Feed the cat] has already existed");
 	}
 	
 	@Test
@@ -142,13 +479,31 @@ public class TaskServiceTest {
 		// initial mock up task
 		int updateTaskId = 2;
 		Task updateTask = new Task("Meeting 17th math conference", "at konkaen university", TaskConstant.Status.done);
-		// mock task repository
-		when(taskRepository.findById(updateTaskId)).thenReturn(Optional.ofNullable(null));
+		// mock task repository when no row is updated and the task does not exist
+		when(taskRepository.findVersionById(updateTaskId)).thenReturn(null);
 		// check update task and then throw task exception
-		assertThatThrownBy(() -> taskService.update(updateTaskId, updateTask))
-			.isInstanceOf(TaskException.class);
-		// check findById method is executed only 1 time 
-		verify(taskRepository, times(1)).findById(updateTaskId);
+		assertThatThrownBy(() -> taskService.update(updateTaskId, updateTask, null))
+			.isInstanceOf(TaskException.class)
+			.isNotInstanceOf(TaskConflictException.class)
+			.hasMessage("Not found id: " + updateTaskId);
+		// check findVersionById method is executed only 1 time 
+		verify(taskRepository, times(1)).findVersionById(updateTaskId);
+	}
+	
+	@Test
+	public void editTask_VersionConflict() throws TaskException {
+		// initial mock up task
+		int updateTaskId = 1;
+		Task updateTask = new Task("Clean the floor", "at the office", TaskConstant.Status.done);
+		// mock task repository when the task has been modified since version 3
+		when(taskRepository.updateTaskByIdAndVersionAndStatus(updateTaskId, "Clean the floor", "clean the floor", "at the office", 
+				TaskConstant.Status.done, 3L, 0L)).thenReturn(0);
+		when(taskRepository.findVersionById(updateTaskId)).thenReturn(4L);
+		// check update task and then throw task conflict exception
+		assertThatThrownBy(() -> taskService.update(updateTaskId, updateTask, 3L))
+			.isInstanceOf(TaskConflictException.class);
+		// check no event is published for the rejected write
+		verify(eventPublisher, never()).publishEvent(any(TaskEvent.class));
 	}
 	
 	@Test
@@ -156,20 +511,88 @@ public class TaskServiceTest {
 		// initial mock up task
 		int updateTaskId = 1;
 		String doneStatus = TaskConstant.Status.done;
-		Task updateTask = this.mockSingleTask;
-		updateTask.setStatus(doneStatus);
 		// mock task repository
-		when(taskRepository.findById(updateTaskId)).thenReturn(Optional.ofNullable(this.mockSingleTask));
-		when(taskRepository.updateTaskStatusById(doneStatus, updateTaskId))
+		when(taskRepository.updateTaskStatusById(doneStatus, updateTaskId, 0L))
 			.thenReturn(1);
 		// update task status
-		int numOfUpdatedRows = taskService.updateTaskStatus(doneStatus, updateTaskId); 
+		int numOfUpdatedRows = taskService.updateTaskStatus(doneStatus, updateTaskId, null); 
 		// check associated rows are updated
 		assertEquals(1, numOfUpdatedRows);
-		// check findById is executed only 1 time with id as parameters
-		verify(taskRepository, times(1)).findById(updateTaskId);
+		// check the task is never loaded before it is updated
+		verify(taskRepository, never()).findById(updateTaskId);
 		// check updateTaskStatusById is executed only 1 time with status and id as parameters
-		verify(taskRepository, times(1)).updateTaskStatusById(doneStatus, updateTaskId);
+		verify(taskRepository, times(1)).updateTaskStatusById(doneStatus, updateTaskId, 0L);
+		// check the status change is published so the cached task is evicted
+		verify(eventPublisher, times(1)).publishEvent(any(TaskEvent.class));
+	}
+	
+	@Test
+	public void updateTaskStatusByTaskId_VersionMatched() throws TaskException {
+		// initial mock up task
+		int updateTaskId = 1;
+		String doneStatus = TaskConstant.Status.done;
+		// mock task repository
+		when(taskRepository.updateTaskStatusByIdAndVersion(doneStatus, updateTaskId, 2L, 0L))
+			.thenReturn(1);
+		// update task status when the task is still at version 2
+		int numOfUpdatedRows = taskService.updateTaskStatus(doneStatus, updateTaskId, 2L); 
+		// check associated rows are updated without the unconditional update
+		assertEquals(1, numOfUpdatedRows);
+		verify(taskRepository, never()).updateTaskStatusById(doneStatus, updateTaskId, 0L);
+	}
+	
+	@Test
+	public void updateTaskStatusByTaskId_Flipped() throws TaskException {
+		// initial mock up task
+		int updateTaskId = 1;
+		String doneStatus = TaskConstant.Status.done;
+		// mock task repository when the task was pending
+		when(taskRepository.updateTaskStatusByIdAndStatusNot(doneStatus, updateTaskId, 0L))
+			.thenReturn(1);
+		// update task status
+		int numOfUpdatedRows = taskService.updateTaskStatus(doneStatus, updateTaskId, null); 
+		// check the task is updated with one statement
+		assertEquals(1, numOfUpdatedRows);
+		verify(taskRepository, never()).updateTaskStatusById(doneStatus, updateTaskId, 0L);
+		// check the previous status is published for the task counters
+		ArgumentCaptor<TaskEvent> event = ArgumentCaptor.forClass(TaskEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertEquals(TaskConstant.Status.pending, event.getValue().getPreviousStatus());
+		assertEquals(doneStatus, event.getValue().getStatus());
+	}
+	
+	@Test
+	public void updateTasksStatus_ReportNotFound() throws TaskException {
+		// initial mock up ids, one id is repeated and one does not exist
+		List<Integer> ids = Arrays.asList(1, 2, 2, 9);
+		List<Object[]> rows = Arrays.asList(new Object[] { 1, TaskConstant.Status.pending }, 
+				new Object[] { 2, TaskConstant.Status.done });
+		// mock task repository
+		when(taskRepository.findStatusesForUpdate(Arrays.asList(1, 2, 9))).thenReturn(rows);
+		when(taskRepository.updateTaskStatusByIdIn(eq(TaskConstant.Status.done), any(), anyLong())).thenReturn(2);
+		// execute task service
+		BulkStatusResponse response = taskService.updateTasksStatus("Done", ids);
+		// check the existing tasks are updated and the missing id is reported
+		assertEquals(2, response.getUpdated());
+		assertEquals(Arrays.asList(9), response.getNotFound());
+		// check one update statement is executed for the chunk and an event is published per task
+		verify(taskRepository, times(1)).updateTaskStatusByIdIn(eq(TaskConstant.Status.done), any(), anyLong());
+		verify(eventPublisher, times(2)).publishEvent(any(TaskEvent.class));
+	}
+	
+	@Test
+	public void updateTasksStatus_Chunked() throws TaskException {
+		// initial mock up ids over two chunks, none of them exists
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id = 1; id <= TaskConstant.Batch.chunkSize + 1; id++)
+			ids.add(id);
+		// execute task service
+		BulkStatusResponse response = taskService.updateTasksStatus(TaskConstant.Status.done, ids);
+		// check every id is reported and no update statement is executed
+		assertEquals(0, response.getUpdated());
+		assertEquals(ids, response.getNotFound());
+		verify(taskRepository, times(2)).findStatusesForUpdate(any());
+		verify(taskRepository, never()).updateTaskStatusByIdIn(any(), any(), anyLong());
 	}
 	
 	@Test
@@ -177,11 +600,152 @@ public class TaskServiceTest {
 		// initial mock up task
 		int deleteTaskId = 1;
 		// mock task repository
-		doNothing().when(taskRepository).deleteById(deleteTaskId);
+		when(taskRepository.findStatusesForUpdate(Collections.singletonList(deleteTaskId)))
+			.thenReturn(Collections.singletonList(new Object[] { deleteTaskId, TaskConstant.Status.pending }));
 		// delete task
 		taskService.delete(deleteTaskId);
-		// check deleteById is executed only 1 time with id as parameters
-		verify(taskRepository, times(1)).deleteById(deleteTaskId);
+		// check the locked row is deleted once by id after its tombstone and never loaded
+		verify(taskRepository, times(1)).insertTombstones(Collections.singleton(deleteTaskId), 0L);
+		verify(taskRepository, times(1)).deleteTasksByIdIn(Collections.singleton(deleteTaskId));
+		verify(taskRepository, never()).findById(deleteTaskId);
+		// check the status of the deleted task is published for the task counters
+		ArgumentCaptor<TaskEvent> event = ArgumentCaptor.forClass(TaskEvent.class);
+		verify(eventPublisher, times(1)).publishEvent(event.capture());
+		assertEquals(TaskConstant.Status.pending, event.getValue().getPreviousStatus());
+	}
+	
+	@Test
+	public void deleteTask_NotFound() throws TaskException {
+		// initial mock up task
+		int deleteTaskId = 2;
+		// mock task repository
+		when(taskRepository.findStatusesForUpdate(Collections.singletonList(deleteTaskId))).thenReturn(new ArrayList<Object[]>());
+		// check delete task and then throw task exception
+		assertThatThrownBy(() -> taskService.delete(deleteTaskId))
+			.isInstanceOf(TaskException.class)
+			.hasMessage("Not found id: " + deleteTaskId);
+		// check nothing is written and no event is published
+		verify(taskRepository, never()).deleteTasksByIdIn(any());
+		verify(eventPublisher, never()).publishEvent(any(TaskEvent.class));
+	}
+	
+	@Test
+	public void deleteTasks_ChunkedTransactions() throws TaskException {
+		// initial mock up ids over two chunks, the last id does not exist
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id = 1; id <= TaskConstant.Batch.chunkSize + 1; id++)
+			ids.add(id);
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (int id = 1; id <= TaskConstant.Batch.chunkSize; id++)
+			rows.add(new Object[] { id, TaskConstant.Status.done });
+		// mock task repository
+		when(taskRepository.findStatusesForUpdate(ids.subList(0, TaskConstant.Batch.chunkSize))).thenReturn(rows);
+		when(taskRepository.deleteTasksByIdIn(any())).thenReturn(TaskConstant.Batch.chunkSize);
+		// execute task service
+		BulkDeleteResponse response = taskService.deleteTasks(ids);
+		// check the existing tasks are deleted and the missing id is reported
+		assertEquals(TaskConstant.Batch.chunkSize, response.getDeleted());
+		assertEquals(2, response.getChunks());
+		assertEquals(Arrays.asList(TaskConstant.Batch.chunkSize + 1), response.getNotFound());
+		// check every chunk is committed in its own transaction and only the first one deletes
+		verify(transactionManager, times(2)).commit(any());
+		verify(taskRepository, times(1)).deleteTasksByIdIn(any());
+	}
+	
+	@Test
+	public void deleteTasksByStatus_UntilNoneLeft() throws TaskException {
+		// mock task repository with one chunk of done tasks and then none
+		when(taskRepository.findIdsByStatusForUpdate(eq(TaskConstant.Status.done), eq(0), any(Pageable.class)))
+			.thenReturn(Arrays.asList(2, 5));
+		when(taskRepository.findIdsByStatusForUpdate(eq(TaskConstant.Status.done), eq(5), any(Pageable.class)))
+			.thenReturn(new ArrayList<Integer>());
+		when(taskRepository.deleteTasksByIdIn(any())).thenReturn(2);
+		// execute task service
+		BulkDeleteResponse response = taskService.deleteTasksByStatus(TaskConstant.Status.done);
+		// check the tasks are deleted in one chunk and an event is published per task
+		assertEquals(2, response.getDeleted());
+		assertEquals(1, response.getChunks());
+		verify(eventPublisher, times(2)).publishEvent(any(TaskEvent.class));
+	}
+	
+	@Test
+	public void getChanges_MergedUpToVisibleVersion() throws TaskException {
+		// initial mock up changes, task 2 was written at version 3 and task 1 deleted at version 4
+		Task changedTask = new Task(2, "Water the roses", "in the garden", TaskConstant.Status.done);
+		changedTask.setChangeVersion(3);
+		// mock the versions committed so far and task repository
+		when(taskChangeVersions.visible()).thenReturn(5L);
+		when(taskRepository.findChangedTasks(eq(2L), eq(5L), any(Pageable.class))).thenReturn(Arrays.asList(changedTask));
+		when(taskRepository.findTombstones(eq(2L), eq(5L), any(Pageable.class))).thenReturn(Arrays.asList(new TaskTombstone(1, 4)));
+		// execute task service
+		TaskChanges changes = taskService.getChanges(2, 10);
+		// check every change is returned and the next sync starts at the visible version
+		assertThat(changes.getItems()).extracting(Task::getId).containsExactly(2);
+		assertEquals(Arrays.asList(1), changes.getDeleted());
+		assertEquals(5L, changes.getVersion());
+		assertEquals(false, changes.isMore());
+	}
+	
+	@Test
+	public void getChanges_PageEndsBetweenVersions() throws TaskException {
+		// initial mock up changes, tasks 1 and 2 share version 2 of a bulk update and task 3 is deleted at version 3
+		List<Task> changedTasks = new ArrayList<Task>();
+		for (int id = 1; id <= 3; id++) {
+			Task task = new Task(id, "Task " + id, null, TaskConstant.Status.done);
+			task.setChangeVersion(id == 3 ? 4 : 2);
+			changedTasks.add(task);
+		}
+		// mock the versions committed so far and task repository
+		when(taskChangeVersions.visible()).thenReturn(9L);
+		when(taskRepository.findChangedTasks(eq(0L), eq(9L), any(Pageable.class))).thenReturn(changedTasks);
+		when(taskRepository.findTombstones(eq(0L), eq(9L), any(Pageable.class))).thenReturn(Arrays.asList(new TaskTombstone(5, 3)));
+		when(taskRepository.findChangedTasks(0L, 2L, Pageable.unpaged())).thenReturn(changedTasks.subList(0, 2));
+		// execute task service with a limit falling inside version 2
+		TaskChanges changes = taskService.getChanges(0, 1);
+		// check version 2 is returned whole with a second query and the next sync starts after it
+		assertThat(changes.getItems()).extracting(Task::getId).containsExactly(1, 2);
+		assertEquals(2L, changes.getVersion());
+		assertEquals(true, changes.isMore());
+		// execute task service with a limit falling inside version 3
+		changes = taskService.getChanges(0, 3);
+		// check the page stops before version 4
+		assertThat(changes.getItems()).extracting(Task::getId).containsExactly(1, 2);
+		assertEquals(Arrays.asList(5), changes.getDeleted());
+		assertEquals(3L, changes.getVersion());
+		assertEquals(true, changes.isMore());
+	}
+	
+	@Test
+	public void getChanges_ResetBelowHorizon() throws TaskException {
+		// mock the versions committed so far, the tombstones up to version 4 may be pruned
+		when(taskChangeVersions.visible()).thenReturn(9L);
+		when(taskChangeVersions.horizon()).thenReturn(4L);
+		// execute task service from below and from the horizon
+		TaskChanges reset = taskService.getChanges(3, 10);
+		TaskChanges changes = taskService.getChanges(4, 10);
+		// check the client behind is reset to the visible version without reading any change
+		assertEquals(true, reset.isReset());
+		assertEquals(9L, reset.getVersion());
+		assertThat(reset.getItems()).isEmpty();
+		assertThat(reset.getDeleted()).isEmpty();
+		assertEquals(false, changes.isReset());
+		verify(taskRepository, never()).findChangedTasks(eq(3L), anyLong(), any());
+		verify(taskRepository, times(1)).findChangedTasks(eq(4L), eq(9L), any(Pageable.class));
+	}
+	
+	@Test
+	public void getChanges_NegativeSince() {
+		// check a negative version is rejected before any query
+		assertThatThrownBy(() -> taskService.getChanges(-1, 10))
+			.isInstanceOf(TaskBadRequestException.class)
+			.hasMessage("since must not be negative");
+		verify(taskRepository, never()).findChangedTasks(anyLong(), anyLong(), any());
+	}
+	
+	private DataIntegrityViolationException duplicateSubjectViolation() {
+		return new DataIntegrityViolationException("could not execute statement", 
+				new ConstraintViolationException("Unique index or primary key violation", 
+						new SQLException(), "\"PUBLIC.UK_TASK_SUBJECT_KEY_INDEX_2 ON PUBLIC.TASK(SUBJECT_KEY)\""));
 	}
 	
 }
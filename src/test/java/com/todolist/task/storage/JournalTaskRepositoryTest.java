@@ -0,0 +1,270 @@
+package com.todolist.task.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.util.unit.DataSize;
+
+import com.todolist.task.constant.TaskConstant;
+import com.todolist.task.entities.Task;
+import com.todolist.task.entities.TaskTombstone;
+
+public class JournalTaskRepositoryTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private JournalTaskRepository taskRepository;
+	
+	@Before
+	public void open() throws IOException {
+		taskRepository = reopen();
+	}
+	
+	@After
+	public void close() throws IOException {
+		taskRepository.close();
+	}
+	
+	private JournalTaskRepository reopen() throws IOException {
+		return new JournalTaskRepository(folder.getRoot().getPath(), DataSize.ofKilobytes(1), true);
+	}
+	
+	@Test
+	public void restart_ReplaysJournal() throws IOException {
+		// write tasks through every kind of record, the journal grows past its initial size
+		taskRepository.saveAll(Arrays.asList(new Task("Clean the room", "Finished before 6 pm", TaskConstant.Status.pending),
+				new Task("Feed the cat", "twice a day", TaskConstant.Status.pending),
+				new Task("Water the plants", null, TaskConstant.Status.pending)));
+		for (int i = 0; i < 50; i++)
+			taskRepository.save(new Task("Task " + i, "description " + i, TaskConstant.Status.done));
+		taskRepository.updateTaskStatusByIdAndStatusNot(TaskConstant.Status.done, 2, 0);
+		taskRepository.updateTaskByIdAndStatus(3, "Water the roses", null, "in the garden", TaskConstant.Status.pending, 0);
+		taskRepository.deleteById(1);
+		// restart from the journal
+		taskRepository.close();
+		taskRepository = reopen();
+		// check tasks, versions and indexes are back
+		assertEquals(52, taskRepository.count());
+		assertThat(taskRepository.findById(1)).isEmpty();
+		assertEquals(TaskConstant.Status.done, taskRepository.findById(2).get().getStatus());
+		assertEquals(1, taskRepository.findById(2).get().getVersion());
+		Task task = taskRepository.findById(3).get();
+		assertEquals("Water the roses", task.getSubject());
+		assertEquals("in the garden", task.getDescription());
+		assertThat(taskRepository.findByStatusOrderByIdAsc(TaskConstant.Status.pending)).extracting(Task::getId).containsExactly(3);
+		assertThat(taskRepository.findExistingSubjectKeys(Arrays.asList("clean the room", "feed the cat")))
+			.containsExactly("feed the cat");
+		// check new ids follow the replayed ones
+		assertEquals(54, taskRepository.save(new Task("Buy milk", null, TaskConstant.Status.pending)).getId());
+	}
+	
+	@Test
+	public void restart_IgnoresTornRecord() throws IOException {
+		// write two tasks in two records
+		taskRepository.save(new Task("Clean the room", "Finished before 6 pm", TaskConstant.Status.pending));
+		taskRepository.save(new Task("Feed the cat", "twice a day", TaskConstant.Status.pending));
+		taskRepository.close();
+		// corrupt the last byte of the second record like a crash in the middle of the append
+		Path journal = folder.getRoot().toPath().resolve("tasks-0000000001.journal");
+		try (RandomAccessFile file = new RandomAccessFile(journal.toFile(), "rw")) {
+			long end = 16;
+			while (true) {
+				file.seek(end);
+				int length = file.readInt();
+				if (length == 0)
+					break;
+				end += 8 + length;
+			}
+			file.seek(end - 1);
+			int last = file.read();
+			file.seek(end - 1);
+			file.write(last ^ 0xff);
+		}
+		taskRepository = reopen();
+		// check only the intact record is replayed and the journal is appended after it
+		assertThat(taskRepository.findAll()).extracting(Task::getId).containsExactly(1);
+		taskRepository.save(new Task("Feed the cat", "twice a day", TaskConstant.Status.pending));
+		taskRepository.close();
+		taskRepository = reopen();
+		assertThat(taskRepository.findAll()).extracting(Task::getSubject).containsExactly("Clean the room", "Feed the cat");
+	}
+	
+	@Test
+	public void restart_LoadsSnapshotAndLaterJournal() throws IOException {
+		// write tasks and take a snapshot of them
+		for (int i = 1; i <= 20; i++)
+			taskRepository.save(new Task("Task " + i, "description " + i, TaskConstant.Status.pending));
+		taskRepository.snapshot();
+		// write after the snapshot, deleting the task with the highest id
+		taskRepository.updateTaskStatusById(TaskConstant.Status.done, 1, 0);
+		taskRepository.deleteById(20);
+		// check only the snapshot and the journal written after it are left
+		assertThat(folder.getRoot().list()).containsExactlyInAnyOrder("tasks.snapshot", "tasks-0000000002.journal");
+		// restart from the snapshot and the journal
+		taskRepository.close();
+		taskRepository = reopen();
+		// check the writes of both are back and the deleted id is not given again
+		assertEquals(19, taskRepository.count());
+		assertEquals(TaskConstant.Status.done, taskRepository.findById(1).get().getStatus());
+		assertThat(taskRepository.findById(20)).isEmpty();
+		assertEquals(21, taskRepository.save(new Task("Buy milk", null, TaskConstant.Status.pending)).getId());
+		// check a snapshot without writes since the last one is skipped and a new one covers everything
+		taskRepository.snapshot();
+		taskRepository.snapshot();
+		assertThat(folder.getRoot().list()).containsExactlyInAnyOrder("tasks.snapshot", "tasks-0000000003.journal");
+		taskRepository.close();
+		taskRepository = reopen();
+		assertEquals(20, taskRepository.count());
+		assertEquals(22, taskRepository.save(new Task("Buy bread", null, TaskConstant.Status.pending)).getId());
+	}
+	
+	@Test
+	public void restart_KeepsChangeVersionsAndTombstones() throws IOException {
+		// write tasks at versions 1 to 4, then a bulk status change at version 5 and a delete at version 6
+		for (int i = 1; i <= 4; i++) {
+			Task task = new Task("Task " + i, null, TaskConstant.Status.pending);
+			task.setChangeVersion(i);
+			taskRepository.save(task);
+		}
+		taskRepository.updateTaskStatusByIdIn(TaskConstant.Status.done, Arrays.asList(3, 1), 5);
+		assertEquals(1, taskRepository.insertTombstones(Arrays.asList(2, 99), 6));
+		taskRepository.deleteTasksByIdIn(Arrays.asList(2));
+		// snapshot them, then delete at version 7 and leave a tombstone whose delete never reached the journal
+		taskRepository.snapshot();
+		taskRepository.insertTombstones(Arrays.asList(4), 7);
+		taskRepository.deleteById(4);
+		taskRepository.insertTombstones(Arrays.asList(1), 8);
+		// restart from the snapshot and the journal
+		taskRepository.close();
+		taskRepository = reopen();
+		// check the changes come in version order and the tombstone of the task still there is dropped
+		assertThat(taskRepository.findChangedTasks(0, 10, PageRequest.of(0, 10))).extracting(Task::getId).containsExactly(1, 3);
+		assertThat(taskRepository.findChangedTasks(0, 4, PageRequest.of(0, 10))).isEmpty();
+		assertThat(taskRepository.findTombstones(5, 10, PageRequest.of(0, 10))).extracting(TaskTombstone::getId)
+			.containsExactly(2, 4);
+		assertThat(taskRepository.findTombstones(6, 10, PageRequest.of(0, 10))).extracting(TaskTombstone::getChangeVersion)
+			.containsExactly(7L);
+		assertEquals(5, taskRepository.findLastChangeVersion());
+		assertEquals(7, taskRepository.findLastTombstoneChangeVersion());
+	}
+	
+	@Test
+	public void deleteTombstonesUpTo_PrunedInMemory() throws IOException {
+		// write tasks and delete them at versions 3, 5 and 7
+		for (int i = 1; i <= 3; i++)
+			taskRepository.save(new Task("Task " + i, null, TaskConstant.Status.pending));
+		for (int id = 1; id <= 3; id++) {
+			taskRepository.insertTombstones(Arrays.asList(id), 1 + id * 2);
+			taskRepository.deleteById(id);
+		}
+		// check the tombstones up to the horizon are pruned
+		taskRepository.saveTombstoneHorizon(5);
+		assertEquals(2, taskRepository.deleteTombstonesUpTo(5));
+		assertThat(taskRepository.findTombstones(0, 10, PageRequest.of(0, 10))).extracting(TaskTombstone::getChangeVersion)
+			.containsExactly(7L);
+		// check a snapshot keeps them pruned and the horizon after a restart
+		taskRepository.snapshot();
+		taskRepository.close();
+		taskRepository = reopen();
+		assertThat(taskRepository.findTombstones(0, 10, PageRequest.of(0, 10))).extracting(TaskTombstone::getChangeVersion)
+			.containsExactly(7L);
+		assertEquals(5, taskRepository.findTombstoneHorizon());
+	}
+	
+	@Test
+	public void save_DuplicatedSubject() {
+		// write a task
+		taskRepository.save(new Task("Clean the room", "Finished before 6 pm", TaskConstant.Status.pending));
+		// check a subject differing only by case is rejected like the unique index does
+		assertThatThrownBy(() -> taskRepository.save(new Task("CLEAN THE ROOM", null, TaskConstant.Status.pending)))
+			.isInstanceOf(DataIntegrityViolationException.class)
+			.hasCauseInstanceOf(org.hibernate.exception.ConstraintViolationException.class);
+		assertEquals(1, taskRepository.count());
+	}
+	
+	@Test
+	public void save_StaleVersion() {
+		// write a task and update it
+		Task task = taskRepository.save(new Task("Clean the room", "Finished before 6 pm", TaskConstant.Status.pending));
+		Task stale = taskRepository.findById(task.getId()).get();
+		taskRepository.save(task);
+		// check saving the old version is rejected
+		assertThatThrownBy(() -> taskRepository.save(stale)).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+		// check conditional updates only match their version and a status change
+		assertEquals(0, taskRepository.updateTaskStatusByIdAndVersion(TaskConstant.Status.done, task.getId(), 0, 0));
+		assertEquals(0, taskRepository.updateTaskStatusByIdAndStatusNot(TaskConstant.Status.pending, task.getId(), 0));
+		assertEquals(0, taskRepository.updateTaskByIdAndStatus(task.getId(), "Clean the room", "clean the room", null, 
+				TaskConstant.Status.done, 0));
+		assertEquals(1, taskRepository.updateTaskStatusByIdAndVersion(TaskConstant.Status.done, task.getId(), 1, 0));
+		assertEquals(Long.valueOf(2), taskRepository.findVersionById(task.getId()));
+	}
+	
+	@Test
+	public void findByStatus_Paging() {
+		// write tasks of both statuses
+		for (int i = 1; i <= 10; i++)
+			taskRepository.save(new Task("Task " + i, null, i % 2 == 0 ? TaskConstant.Status.done : TaskConstant.Status.pending));
+		// check pages of one status follow the id order
+		List<Task> page = taskRepository.findByStatusAndIdGreaterThanOrderByIdAsc(TaskConstant.Status.done, 4, PageRequest.of(0, 2));
+		assertThat(page).extracting(Task::getId).containsExactly(6, 8);
+		assertThat(taskRepository.findIdsByStatusForUpdate(TaskConstant.Status.pending, 0, PageRequest.of(0, 10)))
+			.containsExactly(1, 3, 5, 7, 9);
+		// check a bulk update moves the tasks between statuses
+		assertEquals(2, taskRepository.updateTaskStatusByIdIn(TaskConstant.Status.done, Arrays.asList(1, 3, 99), 0));
+		assertThat(taskRepository.findByStatusOrderByIdAsc(TaskConstant.Status.pending)).extracting(Task::getId)
+			.containsExactly(5, 7, 9);
+		assertEquals(2, taskRepository.deleteTasksByIdIn(Arrays.asList(1, 2)));
+		assertThat(taskRepository.countByStatus()).hasSize(2);
+	}
+	
+	@Test
+	public void findFields() {
+		// write tasks
+		taskRepository.save(new Task("Task 1", "first", TaskConstant.Status.pending));
+		taskRepository.save(new Task("Task 2", "second", TaskConstant.Status.done));
+		// check the rows hold the values of the fields in the order asked for
+		List<Object[]> rows = taskRepository.findAllFields(Arrays.asList("status", "id"));
+		assertThat(rows).hasSize(2);
+		assertThat(rows.get(1)).containsExactly(TaskConstant.Status.done, 2);
+		assertThat(taskRepository.findFieldsById(1, Arrays.asList("description"))).containsExactly("first");
+		assertThat(taskRepository.findFieldsById(3, Arrays.asList("id"))).isNull();
+	}
+	
+	@Test
+	public void journalFailure_RefusesWrites() throws IOException {
+		// write a task, then close the journal so the next write that grows it fails
+		taskRepository.save(new Task("Clean the room", "Finished before 6 pm", TaskConstant.Status.pending));
+		taskRepository.close();
+		char[] description = new char[2048];
+		Arrays.fill(description, 'x');
+		assertThatThrownBy(() -> taskRepository.save(new Task("Feed the cat", new String(description), TaskConstant.Status.pending)))
+			.isInstanceOf(DataAccessResourceFailureException.class);
+		// check every later write is refused even when it would fit in the journal
+		assertThatThrownBy(() -> taskRepository.updateTaskStatusByIdAndStatusNot(TaskConstant.Status.done, 1, 0))
+			.isInstanceOf(DataAccessResourceFailureException.class)
+			.hasMessageStartingWith("Task storage refuses writes");
+		assertThatThrownBy(() -> taskRepository.deleteById(1)).isInstanceOf(DataAccessResourceFailureException.class);
+		// check a restart recovers the tasks the journal holds
+		taskRepository = reopen();
+		assertEquals(1, taskRepository.count());
+		assertEquals(TaskConstant.Status.pending, taskRepository.findById(1).get().getStatus());
+	}
+	
+}